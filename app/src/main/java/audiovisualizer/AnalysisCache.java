@@ -0,0 +1,426 @@
+package audiovisualizer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Results of the expensive analyses (whole-clip spectrum, peak summaries and
+// spectrograms), keyed by a hash of the audio content plus the analysis
+// parameters. Recent results are kept in memory up to maxBytes, evicting the
+// least recently used. The results for a file can also be written to a sidecar
+// next to it (<file>.analysis), so reopening the file skips both the hash and
+// the analysis as long as the file has not changed. Results stored elsewhere,
+// such as in a session file, can be attached and are read on first use.
+public final class AnalysisCache {
+    public static final String SIDECAR_SUFFIX = ".analysis";
+    private static final int MAGIC = 0x41564331; // "AVC1"
+    private static final int VERSION = 1;
+    private static final byte SPECTRUM = 1;
+    private static final byte PEAKS = 2;
+    private static final byte SPECTROGRAM = 3;
+    private static final int IO_CHUNK_BYTES = 1 << 16;
+
+    // Peak pyramid levels without the audio they were built from, so a cached
+    // summary does not keep the decoded samples alive
+    private static final class PeakLevels {
+        final int baseBlock;
+        final short[][] mins;
+        final short[][] maxs;
+
+        PeakLevels(int baseBlock, short[][] mins, short[][] maxs) {
+            this.baseBlock = baseBlock;
+            this.mins = mins;
+            this.maxs = maxs;
+        }
+    }
+
+    // Where results that are not in memory may already exist, e.g. an open
+    // session file; consulted on a miss before anything is computed
+    public interface Backing {
+        // The value stored under key (without the fingerprint prefix), or null
+        Object load(String key) throws IOException;
+    }
+
+    private final long maxBytes;
+    private final Map<String, Backing> backings = new HashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    // Access order: the first entry is the least recently used
+    private final LinkedHashMap<String, Object> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public AnalysisCache(long maxBytes) {
+        if (maxBytes < 0)
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxBytes);
+        this.maxBytes = maxBytes;
+    }
+
+    // SHA-256 of the audio format (see formatKey) and raw frame bytes, as hex
+    public static String fingerprint(PcmView audio) {
+        MessageDigest digest = newDigest(audio.format());
+        audio.digest(digest);
+        return fingerprint(digest);
+    }
+
+    // Digest already fed the format, for hashing frame bytes as they arrive;
+    // fingerprint(digest) then gives what fingerprint(view) would for them
+    public static MessageDigest newDigest(AudioFormat format) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        digest.update(formatKey(format).getBytes(StandardCharsets.UTF_8));
+        return digest;
+    }
+
+    // The fields that decide how frame bytes decode, spelled out rather than
+    // taken from AudioFormat.toString(), whose wording is not a contract. Two
+    // formats with the same key hash the same bytes to the same fingerprint.
+    static String formatKey(AudioFormat format) {
+        boolean bigEndian = format.getSampleSizeInBits() > 8 && format.isBigEndian();
+        return format.getEncoding() + "/" + format.getSampleRate() + "/" + format.getSampleSizeInBits()
+                + "/" + format.getChannels() + "/" + format.getFrameSize() + "/" + (bigEndian ? "be" : "le");
+    }
+
+    // Finishes (and resets) a digest from newDigest, as hex
+    public static String fingerprint(MessageDigest digest) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    // Whole-clip magnitude spectrum (Audio_Visualizer.computeFFT)
+    public double[] spectrum(String fingerprint, Supplier<double[]> compute) {
+        String key = fingerprint + "/spectrum";
+        double[] cached = (double[]) get(key);
+        if (cached != null) return cached;
+        double[] result = compute.get();
+        put(key, result);
+        return result;
+    }
+
+    // Peak summary of one channel of the audio with this fingerprint
+    public PeakPyramid peaks(String fingerprint, SampleReader audio, int channel) {
+        String key = fingerprint + "/peaks/" + channel;
+        PeakLevels cached = (PeakLevels) get(key);
+        if (cached != null) {
+            return PeakPyramid.restore(audio, channel, cached.baseBlock, cached.mins, cached.maxs);
+        }
+        PeakPyramid result = PeakPyramid.build(audio, channel);
+        put(key, new PeakLevels(result.baseBlock(), result.mins(), result.maxs()));
+        return result;
+    }
+
+    // Fills target with the spectrogram for these settings (pool frames per
+    // column), either from the cache or by running fill, which must feed the
+    // whole clip into target
+    public void spectrogram(String fingerprint, WindowFunction window, int frameSize, int hop, int pool,
+                            SpectrogramBuffer target, Runnable fill) {
+        String key = fingerprint + "/spectrogram/" + window.name() + "/" + frameSize + "/" + hop
+                + "/" + pool + "/" + target.capacity();
+        float[][] cached = (float[][]) get(key);
+        if (cached != null) {
+            target.restore(cached);
+            return;
+        }
+        fill.run();
+        put(key, target.snapshot());
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long sizeBytes() {
+        return bytes;
+    }
+
+    public synchronized void attach(String fingerprint, Backing backing) {
+        backings.put(fingerprint, backing);
+    }
+
+    public synchronized void detach(String fingerprint) {
+        backings.remove(fingerprint);
+    }
+
+    private synchronized Object get(String key) {
+        Object value = entries.get(key);
+        if (value == null) value = loadBacked(key);
+        if (value != null) hits++;
+        else misses++;
+        return value;
+    }
+
+    private Object loadBacked(String key) {
+        int slash = key.indexOf('/');
+        Backing backing = backings.get(key.substring(0, slash));
+        if (backing == null) return null;
+        try {
+            Object value = backing.load(key.substring(slash + 1));
+            if (value != null) put(key, value);
+            return value;
+        } catch (IOException ex) {
+            // Computing the result again is always possible
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    private synchronized void put(String key, Object value) {
+        long size = sizeOf(value);
+        // A result larger than the whole cache is not worth evicting everything for
+        if (size > maxBytes) return;
+
+        Object old = entries.put(key, value);
+        if (old != null) bytes -= sizeOf(old);
+        bytes += size;
+
+        Iterator<Map.Entry<String, Object>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Object> entry = eldest.next();
+            bytes -= sizeOf(entry.getValue());
+            eldest.remove();
+        }
+    }
+
+    // Approximate heap footprint
+    private static long sizeOf(Object value) {
+        if (value instanceof double[]) {
+            return 16 + 8L * ((double[]) value).length;
+        }
+        if (value instanceof PeakLevels) {
+            long size = 32;
+            for (short[] level : ((PeakLevels) value).mins) size += 2 * (16 + 2L * level.length);
+            return size;
+        }
+        long size = 16;
+        for (float[] frame : (float[][]) value) size += 16 + 4L * frame.length;
+        return size;
+    }
+
+    public static File sidecarFile(File audioFile) {
+        return new File(audioFile.getPath() + SIDECAR_SUFFIX);
+    }
+
+    // Loads the results stored next to audioFile and returns the fingerprint
+    // they were stored under, or null if there is no sidecar or the file has
+    // changed since it was written (different length or modification time).
+    public String loadSidecar(File audioFile) throws IOException {
+        File sidecar = sidecarFile(audioFile);
+        if (!sidecar.isFile()) return null;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(sidecar), IO_CHUNK_BYTES))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (in.readLong() != audioFile.length() || in.readLong() != audioFile.lastModified()) return null;
+            String fingerprint = in.readUTF();
+
+            int count = in.readInt();
+            byte[] chunk = new byte[IO_CHUNK_BYTES];
+            for (int e = 0; e < count; e++) {
+                String key = fingerprint + "/" + in.readUTF();
+                put(key, readValue(in, in.readByte(), chunk));
+            }
+            return fingerprint;
+        }
+    }
+
+    // Writes every cached result for the fingerprint next to audioFile. The
+    // sidecar is written to a temporary file first and then moved into place.
+    public void writeSidecar(File audioFile, String fingerprint) throws IOException {
+        List<String> keys = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        results(fingerprint, keys, values);
+
+        File sidecar = sidecarFile(audioFile);
+        File temp = new File(sidecar.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp), IO_CHUNK_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(audioFile.length());
+            out.writeLong(audioFile.lastModified());
+            out.writeUTF(fingerprint);
+
+            out.writeInt(keys.size());
+            byte[] chunk = new byte[IO_CHUNK_BYTES];
+            for (int e = 0; e < keys.size(); e++) {
+                out.writeUTF(keys.get(e));
+                Object value = values.get(e);
+                out.writeByte(typeOf(value));
+                writeValue(out, value, chunk);
+            }
+        } catch (IOException ex) {
+            temp.delete();
+            throw ex;
+        }
+
+        try {
+            Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Every cached result for the fingerprint, as keys without the fingerprint
+    // prefix and their values (shared, not copied)
+    void results(String fingerprint, List<String> keys, List<Object> values) {
+        String prefix = fingerprint + "/";
+        synchronized (this) {
+            for (Map.Entry<String, Object> entry : entries.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    keys.add(entry.getKey().substring(prefix.length()));
+                    values.add(entry.getValue());
+                }
+            }
+        }
+    }
+
+    // Entry encoding shared by sidecars and session files: a type byte chosen
+    // by typeOf, then the value as written by writeValue
+
+    static byte typeOf(Object value) {
+        if (value instanceof double[]) return SPECTRUM;
+        if (value instanceof PeakLevels) return PEAKS;
+        if (value instanceof float[][]) return SPECTROGRAM;
+        throw new IllegalArgumentException("Not a cached result: " + value);
+    }
+
+    static void writeValue(DataOutputStream out, Object value, byte[] chunk) throws IOException {
+        if (value instanceof double[]) {
+            double[] spectrum = (double[]) value;
+            out.writeInt(spectrum.length);
+            writeDoubles(out, spectrum, chunk);
+        } else if (value instanceof PeakLevels) {
+            PeakLevels peaks = (PeakLevels) value;
+            out.writeInt(peaks.baseBlock);
+            out.writeInt(peaks.mins.length);
+            for (int k = 0; k < peaks.mins.length; k++) {
+                out.writeInt(peaks.mins[k].length);
+                writeShorts(out, peaks.mins[k], chunk);
+                writeShorts(out, peaks.maxs[k], chunk);
+            }
+        } else {
+            float[][] frames = (float[][]) value;
+            out.writeInt(frames.length);
+            out.writeInt(frames.length == 0 ? 0 : frames[0].length);
+            for (float[] frame : frames) writeFloats(out, frame, chunk);
+        }
+    }
+
+    static Object readValue(DataInputStream in, byte type, byte[] chunk) throws IOException {
+        switch (type) {
+            case SPECTRUM:
+                return readDoubles(in, in.readInt(), chunk);
+            case PEAKS: {
+                int baseBlock = in.readInt();
+                int levels = in.readInt();
+                short[][] mins = new short[levels][];
+                short[][] maxs = new short[levels][];
+                for (int k = 0; k < levels; k++) {
+                    int length = in.readInt();
+                    mins[k] = readShorts(in, length, chunk);
+                    maxs[k] = readShorts(in, length, chunk);
+                }
+                return new PeakLevels(baseBlock, mins, maxs);
+            }
+            case SPECTROGRAM: {
+                float[][] frames = new float[in.readInt()][];
+                int bins = in.readInt();
+                for (int f = 0; f < frames.length; f++) frames[f] = readFloats(in, bins, chunk);
+                return frames;
+            }
+            default:
+                throw new IOException("Unknown entry type " + type);
+        }
+    }
+
+    // Arrays go through a byte chunk in bulk rather than one value per call
+
+    private static void writeDoubles(DataOutputStream out, double[] values, byte[] chunk) throws IOException {
+        int per = chunk.length / 8;
+        for (int i = 0; i < values.length; i += per) {
+            int n = Math.min(per, values.length - i);
+            ByteBuffer.wrap(chunk).asDoubleBuffer().put(values, i, n);
+            out.write(chunk, 0, n * 8);
+        }
+    }
+
+    static void writeFloats(DataOutputStream out, float[] values, byte[] chunk) throws IOException {
+        int per = chunk.length / 4;
+        for (int i = 0; i < values.length; i += per) {
+            int n = Math.min(per, values.length - i);
+            ByteBuffer.wrap(chunk).asFloatBuffer().put(values, i, n);
+            out.write(chunk, 0, n * 4);
+        }
+    }
+
+    private static void writeShorts(DataOutputStream out, short[] values, byte[] chunk) throws IOException {
+        int per = chunk.length / 2;
+        for (int i = 0; i < values.length; i += per) {
+            int n = Math.min(per, values.length - i);
+            ByteBuffer.wrap(chunk).asShortBuffer().put(values, i, n);
+            out.write(chunk, 0, n * 2);
+        }
+    }
+
+    private static double[] readDoubles(DataInputStream in, int length, byte[] chunk) throws IOException {
+        double[] values = new double[length];
+        int per = chunk.length / 8;
+        for (int i = 0; i < length; i += per) {
+            int n = Math.min(per, length - i);
+            in.readFully(chunk, 0, n * 8);
+            ByteBuffer.wrap(chunk).asDoubleBuffer().get(values, i, n);
+        }
+        return values;
+    }
+
+    static float[] readFloats(DataInputStream in, int length, byte[] chunk) throws IOException {
+        float[] values = new float[length];
+        int per = chunk.length / 4;
+        for (int i = 0; i < length; i += per) {
+            int n = Math.min(per, length - i);
+            in.readFully(chunk, 0, n * 4);
+            ByteBuffer.wrap(chunk).asFloatBuffer().get(values, i, n);
+        }
+        return values;
+    }
+
+    private static short[] readShorts(DataInputStream in, int length, byte[] chunk) throws IOException {
+        short[] values = new short[length];
+        int per = chunk.length / 2;
+        for (int i = 0; i < length; i += per) {
+            int n = Math.min(per, length - i);
+            in.readFully(chunk, 0, n * 2);
+            ByteBuffer.wrap(chunk).asShortBuffer().get(values, i, n);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,31 @@
+package audiovisualizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import javax.sound.sampled.AudioFormat;
+
+// Where recorded audio comes from: a sound card line, a WAV file replayed or a
+// generated signal. read behaves like TargetDataLine.read: it blocks until it
+// can return whole frames, which also paces the capture loop. A real-time
+// source returns a block once that much time has passed; an unthrottled one
+// returns as fast as it can produce data.
+public interface AudioSource extends Closeable {
+    AudioFormat format();
+
+    void open() throws IOException;
+
+    // Whole frames into buffer, at most length bytes; -1 once a finite source is done
+    int read(byte[] buffer, int offset, int length) throws IOException;
+
+    // True when read is held to a clock the pipeline cannot slow down (a sound
+    // card, a paced replay): blocks that find the ring full are dropped, as on
+    // real hardware. Otherwise the pipeline waits for room, so an unthrottled
+    // source runs exactly as fast as the consumer keeps up.
+    boolean realTime();
+
+    // Short name for the status line
+    String describe();
+
+    @Override
+    void close();
+}
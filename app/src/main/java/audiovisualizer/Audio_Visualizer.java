@@ -0,0 +1,1910 @@
+package audiovisualizer;
+
+import javax.sound.sampled.*;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class Audio_Visualizer extends JFrame {
+    private JButton recordButton, loadButton, saveAudioButton, saveSessionButton, saveGraphButton, visualizeButton,
+            exportFeaturesButton;
+    private JLabel statusLabel;
+    private LiveWaveformPanel livePanel;
+    private FinalWaveformPanel finalPanel;
+    private FrequencyPanel frequencyPanel;
+    private SpectrogramPanel spectrogramPanel;
+    private JComboBox<WindowFunction> windowBox;
+    private JComboBox<SpectrumColumns.FrequencyAxis> frequencyAxisBox;
+    private JComboBox<SpectrumColumns.MagnitudeAxis> magnitudeAxisBox;
+    private JComboBox<SpectrumColumns.Reduction> reductionBox;
+    private JComboBox<Object> sourceBox;
+    private JComboBox<String> speedBox;
+    private JCheckBox recordToDiskBox;
+    private JCheckBox triggerBox;
+    private JCheckBox saveAnalysisBox;
+    private JTextField tonesField;
+    private JSpinner toneThresholdSpinner;
+    private ToneMeterPanel toneMeterPanel;
+
+    // STFT settings for the spectrogram; history is the number of frames on screen
+    private static final int SPECTROGRAM_FRAME_SIZE = 1024;
+    private static final int SPECTROGRAM_HOP = 512;
+    private static final int SPECTROGRAM_HISTORY = 400;
+    private final SpectrogramBuffer spectrogramBuffer =
+            new SpectrogramBuffer(SPECTROGRAM_HISTORY, SPECTROGRAM_FRAME_SIZE / 2 + 1);
+
+    // Live spectrum while recording: the capture thread publishes STFT frames,
+    // a Swing timer copies the newest one into liveMagnitudes and repaints
+    private static final int DISPLAY_REFRESH_MS = 33;
+    // Largest graph export side; rendering is tiled, so this only bounds the PNG
+    private static final int MAX_EXPORT_SIZE = 100_000;
+
+    // Tone monitoring while recording: sliding-DFT window (10 Hz resolution at
+    // 44.1 kHz, enough to separate 50 and 60 Hz hum) and threshold hysteresis
+    private static final double TONE_WINDOW_SECONDS = 0.1;
+    private static final double TONE_HYSTERESIS_DB = 3;
+    // Live waveform: one min/max column per SCOPE_SAMPLES_PER_COLUMN samples
+    // (about 1 s across an 800 px panel at 44.1 kHz), and with the trigger on,
+    // sweeps of SCOPE_SWEEP_SAMPLES (23 ms) starting on a rising zero crossing
+    private static final int SCOPE_COLUMNS = 4096;
+    private static final int SCOPE_SAMPLES_PER_COLUMN = 64;
+    private static final int SCOPE_SWEEP_SAMPLES = 1024;
+    private final ScopeBuffer scopeBuffer =
+            new ScopeBuffer(SCOPE_COLUMNS, SCOPE_SAMPLES_PER_COLUMN, SCOPE_SWEEP_SAMPLES);
+    private long liveScopeUpdates;
+    private final LiveSpectrum liveSpectrum = new LiveSpectrum(SPECTROGRAM_FRAME_SIZE / 2 + 1);
+    private final double[] liveMagnitudes = new double[SPECTROGRAM_FRAME_SIZE / 2];
+    private long liveSpectrumVersion;
+    private long liveSpectrogramFrames;
+    private Timer refreshTimer;
+
+    // Recording in progress, then the finished recording behind currentAudio;
+    // both off-heap and released when replaced. The recording is hashed as it
+    // arrives, so Stop does not read it all again for the fingerprint.
+    private SegmentedByteStore recordingStore;
+    private MessageDigest recordingDigest;
+    private SegmentedByteStore audioStore;
+    private volatile boolean isRecording = false;
+
+    // Source -> ring -> consumer thread (recording, analyzers, live panel)
+    private static final int CAPTURE_RING_BYTES = 1 << 20;
+    private static final String SOURCE_MICROPHONE = "Microphone";
+    private static final String SOURCE_REPLAY = "Replay WAV file...";
+    // Replay and synthetic speeds, times real time; 0 is unthrottled
+    private static final String[] SPEED_LABELS = { "1x", "2x", "10x", "Unthrottled" };
+    private static final double[] SPEEDS = { 1, 2, 10, 0 };
+    private CapturePipeline pipeline;
+
+    // "Record to disk" mode: capture goes straight to a WAV file, and the
+    // finished file backs currentAudio until something else is loaded
+    private WavRecorder diskRecorder;
+    private File recordingFile;
+
+    // Samples decoded per call when streaming through a clip
+    private static final int READ_BLOCK_SAMPLES = 8192;
+    // Raw clip (for saving) and the reader every panel and analyzer uses: the
+    // PcmView, decoding on access, until a SampleBuffer decoded in the
+    // background replaces it for clips whose samples fit in 1/DECODE_HEAP_DIVISOR
+    // of the heap
+    private static final long DECODE_HEAP_DIVISOR = 8;
+    private PcmView currentAudio;
+    private SampleReader currentSamples;
+    private AudioFormat audioFormat;
+
+    // Spectra, peak summaries and spectrograms by content hash, so visualizing
+    // the same clip again is free; currentFile is null for recordings
+    private final AnalysisCache analysisCache = new AnalysisCache(Runtime.getRuntime().maxMemory() / 4);
+    private String currentFingerprint;
+    // Hash of a loaded file without a sidecar, still running off the Swing
+    // thread; read the hash through currentFingerprint(), which waits for it
+    private Future<String> pendingFingerprint;
+    private File currentFile;
+    // Open session file: its audio is mapped and its results are attached to
+    // the cache, so it must not be overwritten while open
+    private SessionFile currentSession;
+    private File currentSessionFile;
+    // Per-frame features of the current clip: filled live while recording,
+    // extracted on demand for loaded files
+    private FeatureSeries currentFeatures;
+    private FeatureSeries recordingFeatures;
+
+    private boolean isFileLoaded = false;
+
+    // Reference to the main frame for error reporting from inner classes
+    private final JFrame mainFrame;
+
+    public Audio_Visualizer() {
+        setTitle("Audio Frequency Visualizer");
+        setSize(800, 600);
+        setDefaultCloseOperation(EXIT_ON_CLOSE);
+        setLayout(new BorderLayout());
+
+        // Store reference to this frame for error reporting
+        mainFrame = this;
+
+        setupUI();
+        setupListeners();
+
+        refreshTimer = new Timer(DISPLAY_REFRESH_MS, e -> refreshLiveViews());
+
+        // Initialize default audio format
+        audioFormat = getFormat();
+    }
+
+    // Magnitude spectrum of the first channel
+    public static double[] computeFFT(SampleReader audio) {
+        int len = (int) Math.min(audio.frames(), Integer.MAX_VALUE - 2);
+        return computeFFT(audio, 0, len, len);
+    }
+
+    // Same spectrum with bounded memory: clips longer than maxLength samples are
+    // cut into consecutive maxLength segments whose spectra are averaged. A
+    // shorter last segment is zero-padded to the same transform; its magnitudes
+    // scale with its length, so summing and dividing by the clip length in
+    // segments weights every sample equally.
+    public static double[] computeFFT(SampleReader audio, int maxLength) {
+        long frames = audio.frames();
+        if (frames <= maxLength) return computeFFT(audio);
+
+        double[] sum = computeFFT(audio, 0, maxLength, maxLength);
+        for (long offset = maxLength; offset < frames; offset += maxLength) {
+            int len = (int) Math.min(maxLength, frames - offset);
+            double[] mags = computeFFT(audio, offset, len, maxLength);
+            for (int i = 0; i < sum.length; i++) sum[i] += mags[i];
+        }
+        double segments = frames / (double) maxLength;
+        for (int i = 0; i < sum.length; i++) sum[i] /= segments;
+        return sum;
+    }
+
+    // Spectrum of len samples from offset, zero-padded to at least transformLength
+    private static double[] computeFFT(SampleReader audio, long offset, int len, int transformLength) {
+        if (transformLength == 0) return new double[0];
+
+        // Whole signal, zero-padded only if the planner finds a cheaper size
+        int n = FftPlanner.realTransformLength(transformLength);
+        RealFft plan = FftPlanner.realPlan(n);
+
+        // Real input: pack even/odd samples into a half-size complex transform
+        double[] real = new double[plan.bins()];
+        double[] imag = new double[plan.bins()];
+
+        float[] block = new float[READ_BLOCK_SAMPLES];
+        for (int start = 0; start < len; start += block.length) {
+            int count = Math.min(block.length, len - start);
+            audio.read(offset + start, 0, block, 0, count);
+            for (int j = 0; j < count; j++) {
+                int i = start + j;
+                if ((i & 1) == 0) real[i >> 1] = block[j];
+                else imag[i >> 1] = block[j];
+            }
+        }
+
+        long start = System.nanoTime();
+        plan.realForwardPacked(real, imag);
+        Metrics.fft(n).recordSince(start);
+
+        double[] mags = new double[n / 2];
+        Kernels.active().magnitudes(real, imag, mags, mags.length);
+
+        return mags;
+    }
+
+    private void setupUI() {
+        // Top panel (buttons + live graph)
+        JPanel topPanel = new JPanel(new BorderLayout());
+
+        JPanel buttonPanel = new JPanel();
+        recordButton = new JButton("Record");
+        loadButton = new JButton("Load");
+        saveAudioButton = new JButton("Save as WAV");
+        saveSessionButton = new JButton("Save Session");
+        saveSessionButton.setToolTipText("Audio, analysis results and features in one " + SessionFile.EXTENSION
+                + " file that reopens instantly");
+        visualizeButton = new JButton("Visualize");
+        saveGraphButton = new JButton("Save Graph");
+        exportFeaturesButton = new JButton("Export Features");
+        exportFeaturesButton.setToolTipText("Per-frame RMS, peak, zero-crossing rate, spectral centroid, rolloff"
+                + " and dominant frequency as CSV");
+        windowBox = new JComboBox<>(WindowFunction.values());
+        frequencyAxisBox = new JComboBox<>(SpectrumColumns.FrequencyAxis.values());
+        magnitudeAxisBox = new JComboBox<>(SpectrumColumns.MagnitudeAxis.values());
+        reductionBox = new JComboBox<>(SpectrumColumns.Reduction.values());
+        reductionBox.setToolTipText("How the FFT bins under each pixel column are combined");
+        sourceBox = new JComboBox<>(new Object[] { SOURCE_MICROPHONE, SOURCE_REPLAY,
+                SyntheticSource.Signal.SWEEP, SyntheticSource.Signal.NOISE, SyntheticSource.Signal.MULTI_TONE });
+        sourceBox.setToolTipText("What Record captures: the microphone, a WAV file played back or a test signal");
+        speedBox = new JComboBox<>(SPEED_LABELS);
+        speedBox.setToolTipText("Replay and test signal speed; the microphone always runs in real time");
+        triggerBox = new JCheckBox("Trigger");
+        triggerBox.setToolTipText("Hold the live waveform still by starting each sweep on a rising zero crossing");
+        recordToDiskBox = new JCheckBox("Record to disk");
+        recordToDiskBox.setToolTipText("Stream recordings to a temporary WAV file instead of memory");
+        saveAnalysisBox = new JCheckBox("Save analysis next to file");
+        tonesField = new JTextField("50, 60, 1000", 10);
+        tonesField.setToolTipText("Comma-separated frequencies whose levels are metered while recording");
+        toneThresholdSpinner = new JSpinner(new SpinnerNumberModel(-30, (int) ToneTracker.MIN_DB, 0, 1));
+        toneThresholdSpinner.setToolTipText("Level at which a tracked tone is reported in the status line");
+        saveAnalysisBox.setToolTipText("Write visualized results to <file>" + AnalysisCache.SIDECAR_SUFFIX
+                + " so reopening the file skips the analysis");
+
+        buttonPanel.add(new JLabel("Source:"));
+        buttonPanel.add(sourceBox);
+        buttonPanel.add(speedBox);
+        buttonPanel.add(recordButton);
+        buttonPanel.add(loadButton);
+        buttonPanel.add(saveAudioButton);
+        buttonPanel.add(saveSessionButton);
+        buttonPanel.add(visualizeButton);
+        buttonPanel.add(saveGraphButton);
+        buttonPanel.add(exportFeaturesButton);
+        buttonPanel.add(new JLabel("Window:"));
+        buttonPanel.add(windowBox);
+        buttonPanel.add(new JLabel("Spectrum:"));
+        buttonPanel.add(frequencyAxisBox);
+        buttonPanel.add(magnitudeAxisBox);
+        buttonPanel.add(reductionBox);
+        buttonPanel.add(triggerBox);
+        buttonPanel.add(recordToDiskBox);
+        buttonPanel.add(saveAnalysisBox);
+        buttonPanel.add(new JLabel("Tones (Hz):"));
+        buttonPanel.add(tonesField);
+        buttonPanel.add(new JLabel("Alert at dBFS:"));
+        buttonPanel.add(toneThresholdSpinner);
+
+        statusLabel = new JLabel("Status: Idle", SwingConstants.CENTER);
+        statusLabel.setFont(new Font("Arial", Font.BOLD, 14));
+
+        livePanel = new LiveWaveformPanel();
+        livePanel.setSource(scopeBuffer);
+        livePanel.setPreferredSize(new Dimension(800, 150));
+        livePanel.setBackground(Color.LIGHT_GRAY);
+
+        toneMeterPanel = new ToneMeterPanel();
+        toneMeterPanel.setPreferredSize(new Dimension(220, 150));
+        toneMeterPanel.setBackground(Color.WHITE);
+
+        // Live waveform with the tone meters beside it
+        JPanel livePanels = new JPanel(new BorderLayout());
+        livePanels.add(livePanel, BorderLayout.CENTER);
+        livePanels.add(toneMeterPanel, BorderLayout.EAST);
+
+        topPanel.add(buttonPanel, BorderLayout.NORTH);
+        topPanel.add(statusLabel, BorderLayout.CENTER);
+        topPanel.add(livePanels, BorderLayout.SOUTH);
+
+        // Bottom panel (final visualization)
+        finalPanel = new FinalWaveformPanel();
+        finalPanel.setBackground(Color.WHITE);
+
+        frequencyPanel = new FrequencyPanel();
+        frequencyPanel.setPreferredSize(new Dimension(800, 150));
+        frequencyPanel.setBackground(new Color(240, 240, 255));
+
+        spectrogramPanel = new SpectrogramPanel();
+        spectrogramPanel.setPreferredSize(new Dimension(800, 150));
+        spectrogramPanel.setBackground(new Color(240, 240, 255));
+        spectrogramPanel.setSource(spectrogramBuffer);
+
+        // Spectrum and spectrogram side by side
+        JPanel spectrumPanel = new JPanel(new GridLayout(1, 2));
+        spectrumPanel.add(frequencyPanel);
+        spectrumPanel.add(spectrogramPanel);
+
+        JPanel bottomPanel = new JPanel(new BorderLayout());
+        bottomPanel.add(finalPanel, BorderLayout.CENTER);
+        bottomPanel.add(spectrumPanel, BorderLayout.SOUTH);
+
+        add(topPanel, BorderLayout.NORTH);
+        add(bottomPanel, BorderLayout.CENTER);
+    }
+
+    private void setupListeners() {
+        recordButton.addActionListener(e -> {
+            if (!isRecording) {
+                isFileLoaded = false;
+                if (startRecording()) {
+                    recordButton.setText("Stop");
+                    statusLabel.setText("Status: Recording " + pipeline.describe() + "...");
+                }
+            } else {
+                finishRecordingAndShow();
+            }
+        });
+
+        loadButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                File file = chooser.getSelectedFile();
+                if (file.getName().toLowerCase().endsWith(SessionFile.EXTENSION)) {
+                    loadSession(file);
+                    return;
+                }
+                try {
+                    isFileLoaded = true;
+
+                    // Header decoded by AudioInputStream, samples memory-mapped and
+                    // decoded on access, so opening costs no heap and no full pass
+                    currentAudio = WavFile.open(file);
+                    currentSamples = currentAudio;
+                    // An up-to-date sidecar supplies the hash as well as the results
+                    currentFingerprint = analysisCache.loadSidecar(file);
+                    pendingFingerprint = currentFingerprint == null ? hashInBackground(currentAudio) : null;
+                    currentFile = file;
+                    currentFeatures = null;
+                    discardPreviousRecording();
+                    decodeInBackground(currentAudio);
+                    audioFormat = currentAudio.format();
+                    statusLabel.setText("Status: File Loaded");
+                    scopeBuffer.clear();
+                    livePanel.repaint();
+                } catch (IOException | UnsupportedAudioFileException ex) {
+                    JOptionPane.showMessageDialog(this, "Error loading audio file: " + ex.getMessage(),
+                            "File Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace();
+                }
+            }
+        });
+
+        saveAudioButton.addActionListener(e -> {
+            if (currentAudio == null || currentAudio.frames() == 0) {
+                JOptionPane.showMessageDialog(this, "No audio data to save",
+                        "Save Error", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("recording.wav"));
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                File file = chooser.getSelectedFile();
+                if (!file.getName().toLowerCase().endsWith(".wav")) {
+                    file = new File(file.getAbsolutePath() + ".wav");
+                }
+                if (isOpen(file)) {
+                    JOptionPane.showMessageDialog(this, file.getName() + " is open; save it under another name",
+                            "Save Error", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+
+                File target = file;
+                File source = recordingFile;
+                PcmView audio = currentAudio;
+                // Another recording may replace this one while the save runs
+                SegmentedByteStore store = audioStore != null ? audioStore.retain() : null;
+                runExport("Saving " + target.getName(), target, "Error saving WAV file: ", "Status: Saved as WAV file",
+                        (output, progress) -> {
+                            try {
+                                if (source != null) {
+                                    // Already a complete WAV file on disk
+                                    try (InputStream in = new ProgressInputStream(
+                                            new FileInputStream(source), source.length(), progress)) {
+                                        Files.copy(in, output.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                                    }
+                                } else {
+                                    saveAsWavFile(output, audio, progress);
+                                }
+                            } finally {
+                                if (store != null) store.close();
+                            }
+                        });
+            }
+        });
+
+        saveSessionButton.addActionListener(e -> {
+            if (currentAudio == null || currentAudio.frames() == 0) {
+                JOptionPane.showMessageDialog(this, "No audio data to save",
+                        "Save Error", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("session" + SessionFile.EXTENSION));
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                File file = chooser.getSelectedFile();
+                if (!file.getName().toLowerCase().endsWith(SessionFile.EXTENSION)) {
+                    file = new File(file.getAbsolutePath() + SessionFile.EXTENSION);
+                }
+                if (isOpen(file)) {
+                    JOptionPane.showMessageDialog(this, file.getName() + " is open; save it under another name",
+                            "Save Error", JOptionPane.WARNING_MESSAGE);
+                    return;
+                }
+
+                File target = file;
+                PcmView audio = currentAudio;
+                SampleReader samples = currentSamples;
+                String fingerprint = currentFingerprint();
+                FeatureSeries features = currentFeatures;
+                SegmentedByteStore store = audioStore != null ? audioStore.retain() : null;
+                runExport("Saving " + target.getName(), target, "Error saving session: ", "Status: Session saved",
+                        (output, progress) -> {
+                            try {
+                                // Reopening should show the waveform without a pass over the audio
+                                analysisCache.peaks(fingerprint, samples, 0);
+                                SessionFile.write(output, audio, fingerprint, analysisCache, features, true, progress);
+                            } finally {
+                                if (store != null) store.close();
+                            }
+                        });
+            }
+        });
+
+        visualizeButton.addActionListener(e -> {
+            if (currentSamples != null) {
+                SampleReader samplesToShow = currentSamples;
+                String fingerprint = currentFingerprint();
+                finalPanel.setAudio(samplesToShow, analysisCache.peaks(fingerprint, samplesToShow, 0));
+                finalPanel.repaint();
+
+                double[] freqs = analysisCache.spectrum(fingerprint, () -> computeFFT(samplesToShow));
+                frequencyPanel.setFrequencies(freqs, audioFormat.getSampleRate());
+                frequencyPanel.repaint();
+
+                // Every sample is analysed at the normal hop; for long clips each
+                // column is the maximum over a run of frames, so the whole clip
+                // fits in the history and short events between columns still show
+                long samples = samplesToShow.frames();
+                long stftFrames = (samples + SPECTROGRAM_HOP - 1) / SPECTROGRAM_HOP;
+                int pool = (int) Math.max(1, (stftFrames + SPECTROGRAM_HISTORY - 1) / SPECTROGRAM_HISTORY);
+                WindowFunction window = (WindowFunction) windowBox.getSelectedItem();
+                analysisCache.spectrogram(fingerprint, window, SPECTROGRAM_FRAME_SIZE, SPECTROGRAM_HOP, pool,
+                        spectrogramBuffer, () -> {
+                    spectrogramBuffer.clear();
+                    StftProcessor.MaxPool columns = new StftProcessor.MaxPool(pool, spectrogramBuffer);
+                    StftProcessor stft = new StftProcessor(SPECTROGRAM_FRAME_SIZE, SPECTROGRAM_HOP, window, columns);
+                    float[] block = new float[READ_BLOCK_SAMPLES];
+                    for (long pos = 0; pos < samples; pos += block.length) {
+                        int count = (int) Math.min(block.length, samples - pos);
+                        samplesToShow.read(pos, 0, block, 0, count);
+                        stft.feed(block, 0, count);
+                    }
+                    columns.flush();
+                });
+                spectrogramPanel.setSampleRate(audioFormat.getSampleRate());
+                spectrogramPanel.repaint();
+
+                statusLabel.setText("Status: Visualized");
+
+                if (saveAnalysisBox.isSelected() && currentFile != null) {
+                    File file = currentFile;
+                    Thread writer = new Thread(() -> {
+                        try {
+                            analysisCache.writeSidecar(file, fingerprint);
+                        } catch (IOException ex) {
+                            ex.printStackTrace();
+                        }
+                    }, "analysis-sidecar");
+                    writer.setDaemon(true);
+                    writer.start();
+                }
+            }
+        });
+
+        frequencyAxisBox.addActionListener(e -> {
+            frequencyPanel.setFrequencyAxis((SpectrumColumns.FrequencyAxis) frequencyAxisBox.getSelectedItem());
+            frequencyPanel.repaint();
+        });
+
+        magnitudeAxisBox.addActionListener(e -> {
+            frequencyPanel.setMagnitudeAxis((SpectrumColumns.MagnitudeAxis) magnitudeAxisBox.getSelectedItem());
+            frequencyPanel.repaint();
+        });
+
+        triggerBox.addActionListener(e -> {
+            scopeBuffer.setTrigger(triggerBox.isSelected(), 0f);
+            livePanel.repaint();
+        });
+
+        reductionBox.addActionListener(e -> {
+            frequencyPanel.setReduction((SpectrumColumns.Reduction) reductionBox.getSelectedItem());
+            frequencyPanel.repaint();
+        });
+
+        saveGraphButton.addActionListener(e -> {
+            // Composite of all panels at any size; defaults to the size on screen
+            int liveHeight = livePanel.getHeight();
+            int finalHeight = finalPanel.getHeight();
+            int spectrumHeight = frequencyPanel.getHeight();
+            int screenHeight = liveHeight + finalHeight + spectrumHeight;
+            JSpinner widthSpinner = new JSpinner(new SpinnerNumberModel(getWidth(), 100, MAX_EXPORT_SIZE, 100));
+            JSpinner heightSpinner = new JSpinner(new SpinnerNumberModel(screenHeight, 100, MAX_EXPORT_SIZE, 100));
+            JPanel sizePanel = new JPanel(new GridLayout(2, 2, 5, 5));
+            sizePanel.add(new JLabel("Width (px):"));
+            sizePanel.add(widthSpinner);
+            sizePanel.add(new JLabel("Height (px):"));
+            sizePanel.add(heightSpinner);
+            if (JOptionPane.showConfirmDialog(this, sizePanel, "Graph Size",
+                    JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+                return;
+            }
+            int width = (Integer) widthSpinner.getValue();
+            int height = (Integer) heightSpinner.getValue();
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("waveform.png"));
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            File file = chooser.getSelectedFile();
+            // Ensure the file has .png extension
+            if (!file.getName().toLowerCase().endsWith(".png")) {
+                file = new File(file.getAbsolutePath() + ".png");
+            }
+
+            // Panel heights keep their on-screen proportions; the spectrum and
+            // spectrogram share the bottom row. The copies are painted off the
+            // Swing thread, the panels on screen are not touched.
+            int y1 = (int) ((long) height * liveHeight / screenHeight);
+            int y2 = (int) ((long) height * (liveHeight + finalHeight) / screenHeight);
+            int half = width / 2;
+            TiledRenderer renderer = new TiledRenderer(width, height, Color.WHITE);
+            renderer.add(livePanel.copyForExport(width, y1), new Rectangle(0, 0, width, y1));
+            renderer.add(finalPanel.copyForExport(width, y2 - y1), new Rectangle(0, y1, width, y2 - y1));
+            renderer.add(frequencyPanel.copyForExport(half, height - y2), new Rectangle(0, y2, half, height - y2));
+            renderer.add(spectrogramPanel.copyForExport(width - half, height - y2),
+                    new Rectangle(half, y2, width - half, height - y2));
+
+            File target = file;
+            // The waveform copy reads the recording while the export runs
+            SegmentedByteStore store = audioStore != null ? audioStore.retain() : null;
+            runExport("Exporting " + target.getName(), target, "Error saving graph: ", "Status: Graph saved",
+                    (output, progress) -> {
+                        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output), 1 << 16)) {
+                            renderer.writePng(out, progress);
+                        } finally {
+                            if (store != null) store.close();
+                        }
+                    });
+        });
+
+        exportFeaturesButton.addActionListener(e -> {
+            if (currentSamples == null || currentSamples.frames() == 0) {
+                JOptionPane.showMessageDialog(this, "No audio data to analyze",
+                        "Export Error", JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            if (currentFeatures == null) {
+                currentFeatures = FeatureExtractor.extract(currentSamples, FeatureExtractor.DEFAULT_FRAME_SIZE,
+                        FeatureExtractor.DEFAULT_HOP, (WindowFunction) windowBox.getSelectedItem());
+            }
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("features.csv"));
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+                File file = chooser.getSelectedFile();
+                if (!file.getName().toLowerCase().endsWith(".csv")) {
+                    file = new File(file.getAbsolutePath() + ".csv");
+                }
+
+                try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.US_ASCII)) {
+                    currentFeatures.writeCsv(out);
+                    statusLabel.setText("Status: Features exported (" + currentFeatures.frames() + " frames)");
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(this, "Error exporting features: " + ex.getMessage(),
+                            "Export Error", JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace();
+                }
+            }
+        });
+    }
+
+    private void saveAsWavFile(File file, PcmView audio, Progress progress) throws IOException {
+        AudioInputStream ais = new AudioInputStream(
+                new ProgressInputStream(audio.openStream(), audio.frames() * audio.format().getFrameSize(), progress),
+                audio.format(),
+                audio.frames()
+        );
+
+        AudioSystem.write(ais, AudioFileFormat.Type.WAVE, file);
+    }
+
+    // Whether file backs the clip on screen: a loaded WAV or session is mapped
+    // and a disk recording is read from, so writing over it would corrupt both
+    // the clip and the save
+    private boolean isOpen(File file) {
+        for (File open : new File[] { currentFile, recordingFile, currentSessionFile }) {
+            if (open != null && sameFile(file, open)) return true;
+        }
+        return false;
+    }
+
+    private static boolean sameFile(File a, File b) {
+        try {
+            return a.getCanonicalFile().equals(b.getCanonicalFile());
+        } catch (IOException ex) {
+            return a.getAbsoluteFile().equals(b.getAbsoluteFile());
+        }
+    }
+
+    // Saves or exports on a background thread, with a progress dialog whose
+    // Cancel button stops the task. The task writes a temporary file next to
+    // the target, which replaces the target only once the task has succeeded;
+    // a cancelled or failed task deletes the temporary file and leaves any
+    // existing target untouched.
+    private interface ExportTask {
+        void run(File output, Progress progress) throws IOException;
+    }
+
+    private void runExport(String title, File output, String errorPrefix, String doneStatus, ExportTask task) {
+        ProgressMonitor monitor = new ProgressMonitor(this, title, null, 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+        monitor.setMillisToPopup(200);
+        // The monitor is only touched on the Swing thread; the task polls this
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Timer cancelPoll = new Timer(100, e -> {
+            if (monitor.isCanceled()) cancelled.set(true);
+        });
+
+        SwingWorker<Void, Void> worker = new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                File target = output.getAbsoluteFile();
+                File partial = File.createTempFile("." + target.getName() + ".", ".part", target.getParentFile());
+                try {
+                    task.run(partial, fraction -> {
+                        if (cancelled.get()) throw new InterruptedIOException("Cancelled");
+                        setProgress((int) Math.max(0, Math.min(100, Math.round(fraction * 100))));
+                    });
+                    try {
+                        Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                                StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException ex) {
+                        Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } finally {
+                    // Gone already after a successful move
+                    partial.delete();
+                }
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                cancelPoll.stop();
+                monitor.close();
+                saveAudioButton.setEnabled(true);
+                saveSessionButton.setEnabled(true);
+                saveGraphButton.setEnabled(true);
+                try {
+                    get();
+                    statusLabel.setText(doneStatus);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof InterruptedIOException) {
+                        statusLabel.setText("Status: Cancelled");
+                        return;
+                    }
+                    JOptionPane.showMessageDialog(Audio_Visualizer.this, errorPrefix + cause.getMessage(),
+                            "Save Error", JOptionPane.ERROR_MESSAGE);
+                    cause.printStackTrace();
+                }
+            }
+        };
+        worker.addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) monitor.setProgress((Integer) e.getNewValue());
+        });
+
+        // One save or export at a time
+        saveAudioButton.setEnabled(false);
+        saveSessionButton.setEnabled(false);
+        saveGraphButton.setEnabled(false);
+        statusLabel.setText("Status: " + title + "...");
+        cancelPoll.start();
+        worker.execute();
+    }
+
+    // Reports how much of a stream of known length has been read
+    private static final class ProgressInputStream extends FilterInputStream {
+        private static final long REPORT_BYTES = 1 << 20;
+        private final long total;
+        private final Progress progress;
+        private long read;
+        private long reported;
+
+        ProgressInputStream(InputStream in, long total, Progress progress) {
+            super(in);
+            this.total = Math.max(1, total);
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) advance(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) advance(n);
+            return n;
+        }
+
+        private void advance(int n) throws IOException {
+            read += n;
+            if (read - reported >= REPORT_BYTES || read >= total) {
+                reported = read;
+                progress.update((double) read / total);
+            }
+        }
+    }
+
+    // Returns false if recording could not be started
+    private boolean startRecording() {
+        final AudioSource source = createSource();
+        if (source == null) return false;
+        audioFormat = source.format();
+        final AudioFormat format = audioFormat;
+
+        final ToneTracker tones;
+        try {
+            tones = createToneTracker(format.getSampleRate());
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid tone list: " + ex.getMessage(),
+                    "Recording Error", JOptionPane.ERROR_MESSAGE);
+            return false;
+        }
+        toneMeterPanel.setTracker(tones);
+
+        diskRecorder = null;
+        if (recordToDiskBox.isSelected()) {
+            try {
+                File file = File.createTempFile("recording-", ".wav");
+                file.deleteOnExit();
+                diskRecorder = new WavRecorder(file, format);
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(this, "Cannot create recording file: " + ex.getMessage(),
+                        "Recording Error", JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+                return false;
+            }
+        }
+        final WavRecorder recorder = diskRecorder;
+
+        final SegmentedByteStore store = recorder == null ? new SegmentedByteStore(format.getFrameSize()) : null;
+        recordingStore = store;
+        final MessageDigest digest = store != null ? AnalysisCache.newDigest(format) : null;
+        recordingDigest = digest;
+        spectrogramBuffer.clear();
+        scopeBuffer.clear();
+        liveScopeUpdates = -1;
+        liveSpectrum.clear();
+        liveSpectrumVersion = 0;
+        liveSpectrogramFrames = -1;
+        WindowFunction window = (WindowFunction) windowBox.getSelectedItem();
+
+        // The feature extractor's STFT also feeds the spectrogram and live spectrum
+        FeatureExtractor features = new FeatureExtractor(format.getSampleRate(), SPECTROGRAM_FRAME_SIZE,
+                SPECTROGRAM_HOP, window, spectrogramBuffer, liveSpectrum);
+        recordingFeatures = features.series();
+
+        // Each block goes to the recording, the analyzers and the live waveform history
+        CapturePipeline.BlockSink sink = (raw, length, samples, frames) -> {
+            // In disk mode only the live buffers stay in memory
+            if (recorder != null) {
+                recorder.write(raw, 0, length);
+            } else {
+                store.write(raw, 0, length);
+                digest.update(raw, 0, length);
+            }
+            if (tones != null) tones.feed(samples, 0, frames);
+            features.feed(samples, 0, frames);
+            scopeBuffer.append(samples, 0, frames);
+        };
+        // A replay or synthetic source that runs out stops the recording as the button would
+        final CapturePipeline[] started = new CapturePipeline[1];
+        CapturePipeline.EndListener onEnd = error -> SwingUtilities.invokeLater(() -> {
+            if (pipeline != started[0] || !isRecording) return;
+            finishRecordingAndShow();
+            if (error != null) {
+                JOptionPane.showMessageDialog(mainFrame, "Recording error: " + error.getMessage(),
+                        "Recording Error", JOptionPane.ERROR_MESSAGE);
+                error.printStackTrace();
+            }
+        });
+        pipeline = new CapturePipeline(source, CAPTURE_RING_BYTES, sink, onEnd);
+        started[0] = pipeline;
+
+        try {
+            pipeline.start();
+        } catch (IOException ex) {
+            pipeline = null;
+            source.close();
+            if (store != null) {
+                store.close();
+                recordingStore = null;
+                recordingDigest = null;
+            }
+            if (recorder != null) {
+                try {
+                    recorder.close();
+                } catch (IOException closeEx) {
+                    closeEx.printStackTrace();
+                }
+                recorder.file().delete();
+                diskRecorder = null;
+            }
+            JOptionPane.showMessageDialog(this, "Recording error: " + ex.getMessage(),
+                    "Recording Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+            return false;
+        }
+        isRecording = true;
+        spectrogramPanel.setSampleRate(format.getSampleRate());
+        refreshTimer.start();
+        return true;
+    }
+
+    // Source chosen in the source box, or null if the user cancelled or it cannot be used
+    private AudioSource createSource() {
+        Object choice = sourceBox.getSelectedItem();
+        double speed = SPEEDS[speedBox.getSelectedIndex()];
+        if (choice instanceof SyntheticSource.Signal) {
+            return new SyntheticSource((SyntheticSource.Signal) choice, getFormat().getSampleRate(), 0, speed);
+        }
+        if (SOURCE_REPLAY.equals(choice)) {
+            JFileChooser chooser = new JFileChooser();
+            if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return null;
+            try {
+                return new ReplaySource(WavFile.open(chooser.getSelectedFile()), speed, false);
+            } catch (IOException | UnsupportedAudioFileException ex) {
+                JOptionPane.showMessageDialog(this, "Error loading audio file: " + ex.getMessage(),
+                        "File Error", JOptionPane.ERROR_MESSAGE);
+                ex.printStackTrace();
+                return null;
+            }
+        }
+        return new LineSource(getFormat());
+    }
+
+    // Called after stopRecording: the finished recording as a view, backed by
+    // the recording file in disk mode or by the off-heap store otherwise. Also
+    // sets currentFingerprint from the hash taken while recording.
+    private PcmView finishRecording() throws IOException, UnsupportedAudioFileException {
+        discardPreviousRecording();
+        if (diskRecorder == null) {
+            audioStore = recordingStore;
+            recordingStore = null;
+            currentFingerprint = AnalysisCache.fingerprint(recordingDigest);
+            pendingFingerprint = null;
+            recordingDigest = null;
+            return audioStore.view(audioFormat);
+        }
+        WavRecorder recorder = diskRecorder;
+        diskRecorder = null;
+        recorder.close();
+        recordingFile = recorder.file();
+        PcmView audio = WavFile.open(recordingFile);
+        pendingFingerprint = null;
+        // The recorder hashed its own idea of the format; rehash if the header reads back differently
+        boolean sameFormat = AnalysisCache.formatKey(audio.format())
+                .equals(AnalysisCache.formatKey(recorder.fileFormat()));
+        currentFingerprint = sameFormat ? recorder.fingerprint() : AnalysisCache.fingerprint(audio);
+        return audio;
+    }
+
+    // The previous recording is no longer shown: free its memory (saves still
+    // running keep their own reference), best effort, delete its temporary file
+    // and stop reading results from a session that is no longer shown
+    private void discardPreviousRecording() {
+        if (currentSession != null) {
+            analysisCache.detach(currentSession.fingerprint());
+            currentSession = null;
+            currentSessionFile = null;
+        }
+        if (audioStore != null) {
+            // The waveform panel may still read the store; a repaint after
+            // closing it would touch freed memory
+            finalPanel.setAudio(null, null);
+            finalPanel.repaint();
+            audioStore.close();
+            audioStore = null;
+        }
+        if (recordingFile != null) {
+            recordingFile.delete();
+            recordingFile = null;
+        }
+    }
+
+    // Decodes a clip that fits in the heap budget once, off the Swing thread, and
+    // then lets the panels and analyzers read the decoded samples; bigger clips,
+    // or a decode that fails, keep reading the PcmView
+    private void decodeInBackground(PcmView audio) {
+        long bytes = SampleBuffer.decodedBytes(audio.format(), audio.frames());
+        if (bytes > Runtime.getRuntime().maxMemory() / DECODE_HEAP_DIVISOR) return;
+        // A recording replaced while this runs must not free the store under it
+        SegmentedByteStore store = audioStore != null ? audioStore.retain() : null;
+        SwingWorker<SampleBuffer, Void> worker = new SwingWorker<SampleBuffer, Void>() {
+            @Override
+            protected SampleBuffer doInBackground() {
+                try {
+                    return SampleBuffer.decode(audio);
+                } finally {
+                    if (store != null) store.close();
+                }
+            }
+
+            @Override
+            protected void done() {
+                if (currentAudio != audio) return;
+                try {
+                    currentSamples = get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    // Hashes a loaded file off the Swing thread, so opening a large file stays
+    // instant; the result is ignored if another clip has been opened meanwhile
+    private Future<String> hashInBackground(PcmView audio) {
+        SwingWorker<String, Void> worker = new SwingWorker<String, Void>() {
+            @Override
+            protected String doInBackground() {
+                return AnalysisCache.fingerprint(audio);
+            }
+
+            @Override
+            protected void done() {
+                if (pendingFingerprint == this) currentFingerprint();
+            }
+        };
+        worker.execute();
+        return worker;
+    }
+
+    // Content hash of the clip on screen, waiting for the background hash of a
+    // loaded file if it has not finished yet
+    private String currentFingerprint() {
+        Future<String> pending = pendingFingerprint;
+        if (pending != null) {
+            pendingFingerprint = null;
+            try {
+                currentFingerprint = pending.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                currentFingerprint = AnalysisCache.fingerprint(currentAudio);
+            } catch (ExecutionException ex) {
+                // e.g. an I/O error reading the mapped file; hashing again here reports it
+                ex.printStackTrace();
+                currentFingerprint = AnalysisCache.fingerprint(currentAudio);
+            }
+        }
+        return currentFingerprint;
+    }
+
+    // Opens a saved session: the audio is mapped rather than read, and the
+    // stored peak summaries put the waveform on screen straight away
+    private void loadSession(File file) {
+        try {
+            SessionFile session = SessionFile.open(file);
+            FeatureSeries features = session.features();
+            discardPreviousRecording();
+            isFileLoaded = true;
+            currentSession = session;
+            currentSessionFile = file;
+            session.attachTo(analysisCache);
+            currentAudio = session.audio();
+            currentSamples = currentAudio;
+            currentFingerprint = session.fingerprint();
+            pendingFingerprint = null;
+            currentFile = null;
+            currentFeatures = features;
+            audioFormat = currentAudio.format();
+            finalPanel.setAudio(currentSamples, analysisCache.peaks(currentFingerprint, currentSamples, 0));
+            finalPanel.repaint();
+            decodeInBackground(currentAudio);
+            statusLabel.setText("Status: Session Loaded");
+            scopeBuffer.clear();
+            livePanel.repaint();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Error loading session: " + ex.getMessage(),
+                    "File Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        }
+    }
+
+    private void stopRecording() {
+        isRecording = false;
+        // Wait for the last block, so the recording is complete when we read it
+        pipeline.stop();
+        refreshTimer.stop();
+        refreshLiveViews();
+    }
+
+    // Stop button, or a finite source running out
+    private void finishRecordingAndShow() {
+        stopRecording();
+        recordButton.setText("Record");
+        if (pipeline.overruns() > 0) {
+            statusLabel.setText("Status: Recorded (" + pipeline.overruns() + " overruns, "
+                    + pipeline.droppedBytes() + " bytes dropped)");
+        } else {
+            statusLabel.setText("Status: Recorded");
+        }
+        try {
+            currentAudio = finishRecording();
+            // Read straight from the off-heap store or recording file, never copied onto the heap
+            currentSamples = currentAudio;
+            currentFile = null;
+            currentFeatures = recordingFeatures;
+            finalPanel.setAudio(currentSamples, analysisCache.peaks(currentFingerprint, currentSamples, 0));
+            finalPanel.repaint();
+            decodeInBackground(currentAudio);
+        } catch (IOException | UnsupportedAudioFileException ex) {
+            JOptionPane.showMessageDialog(this, "Error finishing recording: " + ex.getMessage(),
+                    "Recording Error", JOptionPane.ERROR_MESSAGE);
+            ex.printStackTrace();
+        }
+    }
+
+    // Tracker for the frequencies in the tones field, or null if it is empty
+    private ToneTracker createToneTracker(float sampleRate) {
+        String text = tonesField.getText().trim();
+        if (text.isEmpty()) return null;
+        String[] parts = text.split("[,;\\s]+");
+        double[] frequencies = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            frequencies[i] = Double.parseDouble(parts[i]);
+        }
+        double threshold = ((Number) toneThresholdSpinner.getValue()).doubleValue();
+        int window = (int) Math.round(sampleRate * TONE_WINDOW_SECONDS);
+        return new ToneTracker(sampleRate, frequencies, window, threshold, TONE_HYSTERESIS_DB,
+                (tone, frequency, level, above) -> SwingUtilities.invokeLater(() -> {
+                    if (!isRecording) return;
+                    statusLabel.setText(String.format("Status: Recording... %s Hz %s %.0f dBFS (%.1f dB)",
+                            ToneMeterPanel.formatHz(frequency), above ? "above" : "back below", threshold, level));
+                }));
+    }
+
+    // Runs on the Swing timer while recording; panels with nothing new are not repainted
+    private void refreshLiveViews() {
+        long updates = scopeBuffer.updates();
+        if (updates != liveScopeUpdates) {
+            liveScopeUpdates = updates;
+            livePanel.repaint();
+        } else {
+            Metrics.repaintSkipped();
+        }
+        long version = liveSpectrum.copyIfNewer(liveSpectrumVersion, liveMagnitudes);
+        if (version != liveSpectrumVersion) {
+            liveSpectrumVersion = version;
+            frequencyPanel.setFrequencies(liveMagnitudes, audioFormat.getSampleRate());
+            frequencyPanel.repaint();
+        } else {
+            Metrics.repaintSkipped();
+        }
+        long frames = spectrogramBuffer.framesWritten();
+        if (frames != liveSpectrogramFrames) {
+            liveSpectrogramFrames = frames;
+            spectrogramPanel.repaint();
+        } else {
+            Metrics.repaintSkipped();
+        }
+        if (toneMeterPanel.refresh()) {
+            toneMeterPanel.repaint();
+        } else {
+            Metrics.repaintSkipped();
+        }
+    }
+
+    private AudioFormat getFormat() {
+        return new AudioFormat(44100, 16, 1, true, true);
+    }
+
+    // Scrolling oscilloscope: the newest columns of a ScopeBuffer, oldest on the
+    // left, or with the trigger on, the latest triggered sweep. Like the
+    // spectrogram, columns are drawn once into an image whose slots wrap
+    // around, so a repaint only draws the columns that arrived since the last
+    // one and blits the rest; a sweep is drawn once when it completes.
+    public static class LiveWaveformPanel extends MeteredPanel {
+        // Bounds the image for very tall exports; it is scaled to the panel
+        private static final int MAX_IMAGE_HEIGHT = 1024;
+        private ScopeBuffer buffer;
+        private BufferedImage image;
+        private long renderedColumns;
+        // Sweep number in the image, or -1 while it holds scrolling columns
+        private long renderedSweep = -1;
+        // Buffer generation the image was drawn from
+        private long renderedGeneration = -1;
+        private float[] sweep;
+        private final float[] column = new float[2];
+        private final int AXIS_MARGIN = 40;
+        private final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 10);
+        private final int AMPLIFICATION_FACTOR = 3; // Increase this to amplify the waveform display
+
+        public LiveWaveformPanel() {
+            super("liveWaveform");
+        }
+
+        public void setSource(ScopeBuffer buffer) {
+            this.buffer = buffer;
+            sweep = new float[buffer.sweepSamples()];
+            image = null;
+        }
+
+        // Offscreen copy reading the same buffer, at another size, for export
+        public LiveWaveformPanel copyForExport(int width, int height) {
+            LiveWaveformPanel copy = new LiveWaveformPanel();
+            copy.setBackground(getBackground());
+            copy.setSize(width, height);
+            if (buffer != null) copy.setSource(buffer);
+            return copy;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2 = (Graphics2D) g;
+
+            int w = getWidth() - AXIS_MARGIN;
+            int h = getHeight() - AXIS_MARGIN;
+            boolean triggered = buffer != null && buffer.triggerEnabled();
+
+            g2.setColor(Color.WHITE);
+            g2.fillRect(AXIS_MARGIN, 0, w, h);
+
+            if (buffer != null && w > 0 && h > 0) {
+                ensureImage(Math.min(w, buffer.capacity()), Math.min(h, MAX_IMAGE_HEIGHT));
+                int iw = image.getWidth();
+                if (triggered) {
+                    updateSweep();
+                    g2.drawImage(image, AXIS_MARGIN, 0, AXIS_MARGIN + w, h, 0, 0, iw, image.getHeight(), null);
+                } else {
+                    updateColumns();
+                    long written = buffer.columnsWritten();
+                    int count = (int) Math.min(written, iw);
+                    if (count > 0) {
+                        // Oldest retained column on the left; the slots wrap around
+                        int start = (int) ((written - count) % iw);
+                        int firstPart = Math.min(count, iw - start);
+                        drawColumns(g2, start, firstPart, 0, w, h);
+                        if (count > firstPart) {
+                            drawColumns(g2, 0, count - firstPart, firstPart, w, h);
+                        }
+                    }
+                }
+            }
+
+            // Draw axes
+            g2.setColor(Color.BLACK);
+            // Y-axis
+            g2.drawLine(AXIS_MARGIN, 0, AXIS_MARGIN, h);
+            // X-axis
+            g2.drawLine(AXIS_MARGIN, h, getWidth(), h);
+
+            // Draw axis labels - moved to prevent overlap
+            g2.setFont(LABEL_FONT);
+
+            // Title
+            g2.drawString(triggered ? "Live Waveform (triggered)" : "Live Waveform", w/2, 15);
+
+            // Y-axis labels and ticks - moved to the left
+            g2.drawString("Amp", 5, h/2 - 10);
+            g2.drawString("+" + formatAmplitude(), 5, 10);
+            g2.drawString("0", 15, h/2);
+            g2.drawString("-" + formatAmplitude(), 5, h - 5);
+
+            g2.drawLine(AXIS_MARGIN-5, 0, AXIS_MARGIN, 0);
+            g2.drawLine(AXIS_MARGIN-5, h/2, AXIS_MARGIN, h/2);
+            g2.drawLine(AXIS_MARGIN-5, h, AXIS_MARGIN, h);
+
+            g2.drawString("Time", w/2, h + 25);
+        }
+
+        private String formatAmplitude() {
+            return String.format("%.2f", 1.0 / AMPLIFICATION_FACTOR);
+        }
+
+        private void ensureImage(int width, int height) {
+            if (image != null && image.getWidth() == width && image.getHeight() == height) return;
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D ig = image.createGraphics();
+            ig.setColor(Color.WHITE);
+            ig.fillRect(0, 0, width, height);
+            ig.dispose();
+            renderedColumns = 0;
+            renderedSweep = -1;
+        }
+
+        // Forgets what the image holds if the buffer has been cleared since
+        private void checkGeneration() {
+            long generation = buffer.generation();
+            if (generation != renderedGeneration) {
+                renderedGeneration = generation;
+                renderedColumns = 0;
+                renderedSweep = -1;
+            }
+        }
+
+        // Draws the columns completed since the last paint into their slots
+        private void updateColumns() {
+            checkGeneration();
+            long written = buffer.columnsWritten();
+            if (renderedSweep >= 0) {
+                // The image still holds a sweep
+                renderedColumns = 0;
+                renderedSweep = -1;
+            }
+            int iw = image.getWidth();
+            long first = Math.max(renderedColumns, written - iw);
+            if (first >= written) return;
+
+            Graphics2D ig = image.createGraphics();
+            boolean hasPrevious = buffer.copyColumn(first - 1, column);
+            float previousMin = column[0];
+            float previousMax = column[1];
+            for (long c = first; c < written; c++) {
+                if (!buffer.copyColumn(c, column)) {
+                    hasPrevious = false;
+                    continue;
+                }
+                drawColumn(ig, (int) (c % iw), column[0], column[1], hasPrevious, previousMin, previousMax);
+                hasPrevious = true;
+                previousMin = column[0];
+                previousMax = column[1];
+            }
+            ig.dispose();
+            renderedColumns = written;
+        }
+
+        // Redraws the whole image when a new sweep has completed
+        private void updateSweep() {
+            checkGeneration();
+            if (buffer.sweepsCompleted() == renderedSweep) return;
+            long number = buffer.copySweep(sweep);
+            int iw = image.getWidth();
+            Graphics2D ig = image.createGraphics();
+            ig.setColor(Color.WHITE);
+            ig.fillRect(0, 0, iw, image.getHeight());
+            if (number > 0) {
+                // Min/max of the sweep samples under each column
+                float previousMin = 0, previousMax = 0;
+                for (int x = 0; x < iw; x++) {
+                    int from = (int) ((long) x * sweep.length / iw);
+                    int to = Math.max(from + 1, (int) ((long) (x + 1) * sweep.length / iw));
+                    float min = sweep[from], max = sweep[from];
+                    for (int i = from + 1; i < to; i++) {
+                        min = Math.min(min, sweep[i]);
+                        max = Math.max(max, sweep[i]);
+                    }
+                    drawColumn(ig, x, min, max, x > 0, previousMin, previousMax);
+                    previousMin = min;
+                    previousMax = max;
+                }
+            }
+            ig.dispose();
+            renderedSweep = number;
+        }
+
+        // One vertical run from max to min, stretched to meet the previous
+        // column so steep edges stay connected
+        private void drawColumn(Graphics2D ig, int x, float min, float max,
+                                boolean hasPrevious, float previousMin, float previousMax) {
+            int ih = image.getHeight();
+            int mid = ih / 2;
+            ig.setColor(Color.WHITE);
+            ig.fillRect(x, 0, 1, ih);
+            ig.setColor(Color.LIGHT_GRAY);
+            ig.fillRect(x, mid, 1, 1);
+
+            int top = toY(max, ih);
+            int bottom = toY(min, ih);
+            if (hasPrevious) {
+                top = Math.min(top, toY(previousMin, ih));
+                bottom = Math.max(bottom, toY(previousMax, ih));
+            }
+            ig.setColor(Color.BLUE);
+            ig.fillRect(x, top, 1, bottom - top + 1);
+        }
+
+        private int toY(float value, int ih) {
+            int mid = ih / 2;
+            int y = Math.round(mid - value * mid * AMPLIFICATION_FACTOR);
+            return Math.max(0, Math.min(ih - 1, y));
+        }
+
+        private void drawColumns(Graphics2D g2, int srcX, int columns, int position, int w, int h) {
+            int iw = image.getWidth();
+            int x1 = AXIS_MARGIN + (int) ((long) position * w / iw);
+            int x2 = AXIS_MARGIN + (int) ((long) (position + columns) * w / iw);
+            g2.drawImage(image, x1, 0, x2, h, srcX, 0, srcX + columns, image.getHeight(), null);
+        }
+    }
+
+    // Complete waveform, drawn from a min/max peak pyramid. Mouse wheel zooms
+    // around the cursor, dragging pans, double-click shows the whole clip again.
+    public static class FinalWaveformPanel extends MeteredPanel {
+        private SampleReader audio;
+        private PeakPyramid peaks;
+        private final int AXIS_MARGIN = 40;
+        private final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 10);
+        private final double ZOOM_STEP = 1.25;
+        private final double MIN_SAMPLES_PER_PIXEL = 1.0 / 16;
+
+        // Visible range: first sample at the left edge and samples per pixel
+        private double viewStart;
+        private double samplesPerPixel;
+        private boolean fitToWidth = true;
+        private int dragX;
+        private final short[] minMax = new short[2];
+
+        public FinalWaveformPanel() {
+            super("finalWaveform");
+            setToolTipText("Mouse wheel to zoom, drag to pan, double-click to show all");
+
+            MouseAdapter mouse = new MouseAdapter() {
+                @Override
+                public void mouseWheelMoved(MouseWheelEvent e) {
+                    zoom(e.getX() - AXIS_MARGIN, Math.pow(ZOOM_STEP, e.getPreciseWheelRotation()));
+                }
+
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    dragX = e.getX();
+                }
+
+                @Override
+                public void mouseDragged(MouseEvent e) {
+                    if (peaks == null) return;
+                    fixView();
+                    viewStart -= (e.getX() - dragX) * samplesPerPixel;
+                    dragX = e.getX();
+                    clampView();
+                    repaint();
+                }
+
+                @Override
+                public void mouseClicked(MouseEvent e) {
+                    if (e.getClickCount() == 2) {
+                        fitToWidth = true;
+                        repaint();
+                    }
+                }
+            };
+            addMouseListener(mouse);
+            addMouseMotionListener(mouse);
+            addMouseWheelListener(mouse);
+        }
+
+        public void setAudio(SampleReader audio) {
+            if (audio != this.audio) {
+                // Building the summary is O(n) once; repaints only read it
+                setAudio(audio, audio == null ? null : PeakPyramid.build(audio, 0));
+            }
+        }
+
+        // Shows audio with a summary of its first channel that is already built
+        public void setAudio(SampleReader audio, PeakPyramid peaks) {
+            if (audio != this.audio) {
+                this.peaks = peaks;
+                fitToWidth = true;
+            }
+            this.audio = audio;
+        }
+
+        // Offscreen copy showing the same sample range at another size, for export
+        public FinalWaveformPanel copyForExport(int width, int height) {
+            FinalWaveformPanel copy = new FinalWaveformPanel();
+            copy.setBackground(getBackground());
+            copy.setSize(width, height);
+            copy.setAudio(audio, peaks);
+            if (!fitToWidth && peaks != null) {
+                double span = samplesPerPixel * Math.max(1, getWidth() - AXIS_MARGIN);
+                copy.fitToWidth = false;
+                copy.viewStart = viewStart;
+                copy.samplesPerPixel = span / Math.max(1, width - AXIS_MARGIN);
+            }
+            return copy;
+        }
+
+        private void zoom(int pixel, double factor) {
+            if (peaks == null) return;
+            fixView();
+            double anchor = viewStart + pixel * samplesPerPixel;
+            double fit = (double) peaks.samples() / Math.max(1, getWidth() - AXIS_MARGIN);
+            samplesPerPixel = Math.max(MIN_SAMPLES_PER_PIXEL, Math.min(fit, samplesPerPixel * factor));
+            viewStart = anchor - pixel * samplesPerPixel;
+            fitToWidth = samplesPerPixel >= fit;
+            clampView();
+            repaint();
+        }
+
+        // Turns "fit to width" into an explicit range before zooming or panning
+        private void fixView() {
+            if (fitToWidth) {
+                viewStart = 0;
+                samplesPerPixel = (double) peaks.samples() / Math.max(1, getWidth() - AXIS_MARGIN);
+                fitToWidth = false;
+            }
+        }
+
+        private void clampView() {
+            double span = samplesPerPixel * Math.max(1, getWidth() - AXIS_MARGIN);
+            viewStart = Math.max(0, Math.min(viewStart, peaks.samples() - span));
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2 = (Graphics2D) g;
+
+            int w = getWidth() - AXIS_MARGIN;
+            int h = getHeight() - AXIS_MARGIN;
+            int mid = h / 2;
+
+            g2.setColor(Color.WHITE);
+            g2.fillRect(AXIS_MARGIN, 0, w, h);
+
+
+            g2.setColor(Color.BLACK);
+            g2.drawLine(AXIS_MARGIN, 0, AXIS_MARGIN, h);
+            g2.drawLine(AXIS_MARGIN, h, getWidth(), h);
+
+            g2.setFont(LABEL_FONT);
+            g2.drawString("Complete Waveform", w/2, 15);
+
+            g2.drawString("Amp", 5, h/2 - 10);
+            g2.drawString("+1.0", 15, 10);
+            g2.drawString("0", 15, h/2);
+            g2.drawString("-1.0", 15, h - 5);
+
+            g2.drawLine(AXIS_MARGIN-5, 0, AXIS_MARGIN, 0);
+            g2.drawLine(AXIS_MARGIN-5, h/2, AXIS_MARGIN, h/2);
+            g2.drawLine(AXIS_MARGIN-5, h, AXIS_MARGIN, h);
+
+            g2.drawString("Time (samples)", w/2, h + 25);
+
+            if (peaks == null || w <= 0) return;
+
+            if (fitToWidth) {
+                viewStart = 0;
+                samplesPerPixel = (double) peaks.samples() / w;
+            }
+
+            for (int i = 0; i <= 5; i++) {
+                int xPos = AXIS_MARGIN + (w * i / 5);
+                g2.drawLine(xPos, h, xPos, h + 5);
+                long sampleNum = (long) (viewStart + samplesPerPixel * w * i / 5);
+                g2.drawString(String.valueOf(sampleNum), xPos - 15, h + 15);
+            }
+
+            if (peaks.samples() < 2) return;
+
+            g2.setColor(Color.RED);
+            g2.setStroke(new BasicStroke(1.5f));
+
+            if (samplesPerPixel >= 1) {
+                // One vertical min/max line per column; each column also covers the
+                // last sample of the previous one so neighbouring columns connect.
+                // Only columns inside the clip are drawn (exports paint in tiles).
+                Rectangle clip = g2.getClipBounds();
+                int fromX = clip == null ? 0 : Math.max(0, clip.x - AXIS_MARGIN - 1);
+                int toX = clip == null ? w : Math.min(w, clip.x + clip.width - AXIS_MARGIN + 1);
+                for (int x = fromX; x < toX; x++) {
+                    long from = (long) (viewStart + x * samplesPerPixel);
+                    long to = (long) (viewStart + (x + 1) * samplesPerPixel);
+                    if (to <= from) continue;
+                    peaks.range(x == 0 ? from : from - 1, to, minMax);
+                    int y1 = (int) (mid + minMax[0] / 32768.0 * mid);
+                    int y2 = (int) (mid + minMax[1] / 32768.0 * mid);
+                    g2.drawLine(AXIS_MARGIN + x, y1, AXIS_MARGIN + x, y2);
+                }
+            } else {
+                // Zoomed in past one sample per pixel: connect the individual samples
+                long first = (long) viewStart;
+                long last = Math.min(peaks.samples() - 1, (long) Math.ceil(viewStart + w * samplesPerPixel));
+                int prevX = 0, prevY = 0;
+                for (long i = first; i <= last; i++) {
+                    int x = AXIS_MARGIN + (int) ((i - viewStart) / samplesPerPixel);
+                    int y = (int) (mid + peaks.sample(i) / 32768.0 * mid);
+                    if (i > first) g2.drawLine(prevX, prevY, x, y);
+                    prevX = x;
+                    prevY = y;
+                }
+            }
+        }
+    }
+
+    // Frequency panel with axes. The spectrum is reduced to one value per pixel
+    // column (SpectrumColumns) when it is set or the panel is resized, so a
+    // repaint draws at most one line per column.
+    public static class FrequencyPanel extends MeteredPanel {
+        private double[] frequencies;
+        private float sampleRate = 44100; // default
+        private SpectrumColumns.FrequencyAxis frequencyAxis = SpectrumColumns.FrequencyAxis.LINEAR;
+        private SpectrumColumns.MagnitudeAxis magnitudeAxis = SpectrumColumns.MagnitudeAxis.LINEAR;
+        private SpectrumColumns.Reduction reduction = SpectrumColumns.Reduction.PEAK;
+        // Normalized column heights for the current spectrum and plot width
+        private float[] columns;
+        private final int AXIS_MARGIN = 40;
+        private final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 10);
+
+        public FrequencyPanel() {
+            super("spectrum");
+        }
+
+        public void setFrequencies(double[] freqs, float rate) {
+            this.sampleRate = rate;
+            setFrequencies(freqs);
+        }
+
+        public void setFrequencies(double[] freqs) {
+            this.frequencies = freqs;
+            updateColumns();
+        }
+
+        public void setFrequencyAxis(SpectrumColumns.FrequencyAxis axis) {
+            this.frequencyAxis = axis;
+            updateColumns();
+        }
+
+        public void setMagnitudeAxis(SpectrumColumns.MagnitudeAxis axis) {
+            this.magnitudeAxis = axis;
+            updateColumns();
+        }
+
+        public void setReduction(SpectrumColumns.Reduction reduction) {
+            this.reduction = reduction;
+            updateColumns();
+        }
+
+        // Offscreen copy of the spectrum and axis settings at another size, for export
+        public FrequencyPanel copyForExport(int width, int height) {
+            FrequencyPanel copy = new FrequencyPanel();
+            copy.setBackground(getBackground());
+            copy.setSize(width, height);
+            copy.frequencyAxis = frequencyAxis;
+            copy.magnitudeAxis = magnitudeAxis;
+            copy.reduction = reduction;
+            if (frequencies != null) copy.setFrequencies(frequencies, sampleRate);
+            return copy;
+        }
+
+        private void updateColumns() {
+            int w = getWidth() - AXIS_MARGIN;
+            columns = frequencies == null || w <= 0 ? null
+                    : SpectrumColumns.reduce(frequencies, w, sampleRate, frequencyAxis, magnitudeAxis, reduction);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2 = (Graphics2D) g;
+
+            int w = getWidth() - AXIS_MARGIN;
+            int h = getHeight() - AXIS_MARGIN;
+
+
+            g2.setColor(Color.WHITE);
+            g2.fillRect(AXIS_MARGIN, 0, w, h);
+
+
+            g2.setColor(Color.BLACK);
+
+            g2.drawLine(AXIS_MARGIN, 0, AXIS_MARGIN, h);
+
+            g2.drawLine(AXIS_MARGIN, h, getWidth(), h);
+
+
+            g2.setFont(LABEL_FONT);
+
+            g2.drawString("Frequency Spectrum", w/2, 15);
+
+
+            boolean db = magnitudeAxis == SpectrumColumns.MagnitudeAxis.DB;
+            g2.drawString(db ? "dB" : "Mag", 5, h/2 - 10);
+
+
+            g2.drawLine(AXIS_MARGIN-5, 0, AXIS_MARGIN, 0);
+            g2.drawLine(AXIS_MARGIN-5, h/4, AXIS_MARGIN, h/4);
+            g2.drawLine(AXIS_MARGIN-5, h/2, AXIS_MARGIN, h/2);
+            g2.drawLine(AXIS_MARGIN-5, 3*h/4, AXIS_MARGIN, 3*h/4);
+            g2.drawLine(AXIS_MARGIN-5, h, AXIS_MARGIN, h);
+
+            if (db) {
+                double minDb = SpectrumColumns.MIN_DB;
+                g2.drawString("0", 15, 10);
+                g2.drawString(String.valueOf((int) (minDb / 4)), 15, h/4);
+                g2.drawString(String.valueOf((int) (minDb / 2)), 15, h/2);
+                g2.drawString(String.valueOf((int) (minDb * 3 / 4)), 15, 3*h/4);
+                g2.drawString(String.valueOf((int) minDb), 15, h - 5);
+            } else {
+                g2.drawString("1.0", 15, 10);
+                g2.drawString("0.75", 15, h/4);
+                g2.drawString("0.5", 15, h/2);
+                g2.drawString("0.25", 15, 3*h/4);
+                g2.drawString("0", 15, h - 5);
+            }
+
+
+            g2.drawString("Frequency (Hz)", w/2, h + 25);
+
+
+            if (frequencies != null && w > 0) {
+                // Draw 5 frequency markers
+                for (int i = 0; i <= 5; i++) {
+                    int xPos = AXIS_MARGIN + (w * i / 5);
+                    g2.drawLine(xPos, h, xPos, h + 5);
+                    double freq = SpectrumColumns.frequencyAt(w * i / 5, w, frequencies.length,
+                            sampleRate, frequencyAxis);
+                    g2.drawString(String.valueOf((int) freq), xPos - 15, h + 15);
+                }
+            }
+
+            if (frequencies == null || frequencies.length == 0 || w <= 0) return;
+            if (columns == null || columns.length != w) updateColumns();
+
+            g2.setColor(Color.DARK_GRAY);
+            g2.setStroke(new BasicStroke(1.5f));
+
+            // One bar per pixel column, for the columns inside the clip
+            float[] heights = columns;
+            Rectangle clip = g2.getClipBounds();
+            int fromC = clip == null ? 0 : Math.max(0, clip.x - AXIS_MARGIN - 1);
+            int toC = clip == null ? heights.length : Math.min(heights.length, clip.x + clip.width - AXIS_MARGIN + 1);
+            for (int c = fromC; c < toC; c++) {
+                int barHeight = (int) (heights[c] * h);
+                if (barHeight <= 0) continue;
+                int x = AXIS_MARGIN + c;
+                g2.drawLine(x, h, x, h - barHeight);
+            }
+        }
+    }
+
+    // Live level of each tracked tone as a horizontal bar from MIN_DB to 0 dBFS,
+    // red once it reaches the tracker's threshold (marked by a vertical line)
+    public static class ToneMeterPanel extends MeteredPanel {
+        private static final double METER_MIN_DB = -90;
+        private volatile ToneTracker tracker;
+        private double[] levels = new double[0];
+        private final int LABEL_WIDTH = 60;
+        private final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 10);
+
+        public ToneMeterPanel() {
+            super("toneMeters");
+        }
+
+        public void setTracker(ToneTracker tracker) {
+            this.tracker = tracker;
+            levels = new double[tracker == null ? 0 : tracker.tones()];
+            Arrays.fill(levels, ToneTracker.MIN_DB);
+            repaint();
+        }
+
+        // Copies the tracker's latest levels; returns whether any changed
+        public boolean refresh() {
+            ToneTracker t = tracker;
+            if (t == null || levels.length != t.tones()) return false;
+            double[] latest = new double[levels.length];
+            t.copyLevels(latest);
+            if (Arrays.equals(latest, levels)) return false;
+            levels = latest;
+            return true;
+        }
+
+        static String formatHz(double frequency) {
+            return frequency == Math.rint(frequency)
+                    ? Long.toString((long) frequency) : String.format("%.1f", frequency);
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2 = (Graphics2D) g;
+            g2.setFont(LABEL_FONT);
+            g2.setColor(Color.BLACK);
+            g2.drawString("Tone Levels (dBFS)", 5, 12);
+
+            ToneTracker t = tracker;
+            double[] shown = levels;
+            if (t == null || shown.length == 0) {
+                g2.drawString("No tones tracked", 5, 30);
+                return;
+            }
+
+            int w = getWidth() - LABEL_WIDTH - 5;
+            int rowHeight = Math.max(8, Math.min(24, (getHeight() - 20) / shown.length));
+            int thresholdX = LABEL_WIDTH + meterWidth(t.thresholdDb(), w);
+            for (int i = 0; i < shown.length; i++) {
+                int y = 20 + i * rowHeight;
+                g2.setColor(Color.BLACK);
+                g2.drawString(formatHz(t.frequency(i)) + " Hz", 5, y + rowHeight - 4);
+
+                g2.setColor(Color.LIGHT_GRAY);
+                g2.fillRect(LABEL_WIDTH, y + 2, w, rowHeight - 4);
+                g2.setColor(shown[i] >= t.thresholdDb() ? Color.RED : new Color(0, 150, 0));
+                g2.fillRect(LABEL_WIDTH, y + 2, meterWidth(shown[i], w), rowHeight - 4);
+            }
+            g2.setColor(Color.BLACK);
+            g2.drawLine(thresholdX, 18, thresholdX, 20 + shown.length * rowHeight);
+        }
+
+        private static int meterWidth(double db, int width) {
+            double fraction = (Math.max(METER_MIN_DB, Math.min(0, db)) - METER_MIN_DB) / -METER_MIN_DB;
+            return (int) Math.round(fraction * width);
+        }
+    }
+
+    // Spectrogram panel: time on x, frequency on y, magnitude as colour
+    public static class SpectrogramPanel extends MeteredPanel {
+        private SpectrogramBuffer buffer;
+        private volatile float sampleRate = 44100; // default
+        private BufferedImage image;
+        private float[] column;
+        private long renderedFrames;
+        // Buffer generation the image was drawn from
+        private long renderedGeneration = -1;
+        private final int AXIS_MARGIN = 40;
+        private final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 10);
+        private final double MIN_DB = -90;
+        private final int[] PALETTE = buildPalette();
+
+        public SpectrogramPanel() {
+            super("spectrogram");
+        }
+
+        public void setSource(SpectrogramBuffer buffer) {
+            this.buffer = buffer;
+            // One image column per frame slot, one row per bin; only columns of
+            // new frames are recoloured on repaint
+            image = new BufferedImage(buffer.capacity(), buffer.bins(), BufferedImage.TYPE_INT_RGB);
+            column = new float[buffer.bins()];
+            renderedFrames = 0;
+            renderedGeneration = -1;
+        }
+
+        public void setSampleRate(float rate) {
+            this.sampleRate = rate;
+        }
+
+        // Offscreen copy reading the same buffer, at another size, for export
+        public SpectrogramPanel copyForExport(int width, int height) {
+            SpectrogramPanel copy = new SpectrogramPanel();
+            copy.setBackground(getBackground());
+            copy.setSize(width, height);
+            if (buffer != null) copy.setSource(buffer);
+            copy.setSampleRate(sampleRate);
+            return copy;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2 = (Graphics2D) g;
+
+            int w = getWidth() - AXIS_MARGIN;
+            int h = getHeight() - AXIS_MARGIN;
+
+            g2.setColor(Color.BLACK);
+            g2.fillRect(AXIS_MARGIN, 0, w, h);
+
+            g2.drawLine(AXIS_MARGIN, 0, AXIS_MARGIN, h);
+            g2.drawLine(AXIS_MARGIN, h, getWidth(), h);
+
+            g2.setFont(LABEL_FONT);
+            g2.drawString("Hz", 5, h/2 - 10);
+            g2.drawString(String.valueOf((int) (sampleRate / 2)), 2, 10);
+            g2.drawString("0", 15, h - 5);
+
+            g2.drawLine(AXIS_MARGIN-5, 0, AXIS_MARGIN, 0);
+            g2.drawLine(AXIS_MARGIN-5, h/2, AXIS_MARGIN, h/2);
+            g2.drawLine(AXIS_MARGIN-5, h, AXIS_MARGIN, h);
+
+            g2.drawString("Time (frames)", w/2, h + 25);
+
+            if (buffer != null) {
+                updateImage();
+
+                int capacity = image.getWidth();
+                long written = buffer.framesWritten();
+                int count = (int) Math.min(written, capacity);
+                if (count > 0) {
+                    // Oldest retained frame on the left; the slots wrap around
+                    int start = (int) ((written - count) % capacity);
+                    int firstPart = Math.min(count, capacity - start);
+                    drawColumns(g2, start, firstPart, 0, w, h);
+                    if (count > firstPart) {
+                        drawColumns(g2, 0, count - firstPart, firstPart, w, h);
+                    }
+                }
+            }
+
+            g2.setColor(Color.WHITE);
+            g2.drawString("Spectrogram", w/2, 15);
+        }
+
+        private void updateImage() {
+            long generation = buffer.generation();
+            if (generation != renderedGeneration) {
+                // Buffer was cleared for a new recording, clip or setting; the
+                // frame count alone cannot tell, it is often back at the same value
+                renderedGeneration = generation;
+                renderedFrames = 0;
+            }
+            long written = buffer.framesWritten();
+
+            int capacity = image.getWidth();
+            int bins = column.length;
+            for (long f = Math.max(renderedFrames, written - capacity); f < written; f++) {
+                if (!buffer.copyFrame(f, column)) continue;
+                int x = (int) (f % capacity);
+                for (int b = 0; b < bins; b++) {
+                    image.setRGB(x, bins - 1 - b, colour(column[b]));
+                }
+            }
+            renderedFrames = written;
+        }
+
+        private void drawColumns(Graphics2D g2, int srcX, int columns, int position, int w, int h) {
+            int capacity = image.getWidth();
+            int x1 = AXIS_MARGIN + (int) ((long) position * w / capacity);
+            int x2 = AXIS_MARGIN + (int) ((long) (position + columns) * w / capacity);
+            g2.drawImage(image, x1, 0, x2, h, srcX, 0, srcX + columns, image.getHeight(), null);
+        }
+
+        private int colour(float magnitude) {
+            double db = 20 * Math.log10(magnitude + 1e-12);
+            int index = (int) ((db - MIN_DB) / -MIN_DB * (PALETTE.length - 1));
+            return PALETTE[Math.max(0, Math.min(PALETTE.length - 1, index))];
+        }
+
+        // Black -> blue -> red -> yellow
+        private int[] buildPalette() {
+            int[] palette = new int[256];
+            for (int i = 0; i < palette.length; i++) {
+                double t = i / 255.0;
+                int r = (int) (255 * Math.min(1, Math.max(0, 2 * t - 0.5)));
+                int g = (int) (255 * Math.min(1, Math.max(0, 2 * t - 1)));
+                int b = (int) (255 * Math.max(0, t < 0.5 ? 2 * t : 2 - 2 * t));
+                palette[i] = (r << 16) | (g << 8) | b;
+            }
+            return palette;
+        }
+    }
+
+    public static void main(String[] args) {
+        Metrics.registerMBean();
+        // --metrics <seconds> [--metrics-csv <file>] writes the metrics periodically
+        long metricsPeriod = 0;
+        File metricsCsv = null;
+        while (args.length >= 2 && (args[0].equals("--metrics") || args[0].equals("--metrics-csv"))) {
+            if (args[0].equals("--metrics")) metricsPeriod = Long.parseLong(args[1]);
+            else metricsCsv = new File(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (metricsPeriod > 0 || metricsCsv != null) {
+            try {
+                Metrics.startDump(metricsPeriod > 0 ? metricsPeriod : 10, metricsCsv);
+            } catch (IOException ex) {
+                System.err.println("Cannot write metrics: " + ex.getMessage());
+            }
+        }
+
+        if (args.length > 0 && args[0].equals("--batch")) {
+            // Headless: analyze a directory of WAV files without building the UI
+            System.exit(BatchAnalyzer.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        if (args.length > 0 && args[0].equals("--loadtest")) {
+            // Headless: push a test signal or file through the capture pipeline and panels
+            System.exit(LoadTest.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        SwingUtilities.invokeLater(() -> new Audio_Visualizer().setVisible(true));
+    }
+}
@@ -0,0 +1,202 @@
+package audiovisualizer;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Headless batch mode: analyzes every WAV file in a directory in parallel and
+// writes its spectrum (CSV or binary), optionally a PNG of the waveform and
+// spectrum, using the same computeFFT and panels as the UI, and optionally its
+// per-frame features (FeatureExtractor) as CSV.
+//
+//   java audiovisualizer.Audio_Visualizer --batch <dir> [--out <dir>] [--png] [--binary]
+//                                         [--features] [--threads <n>] [--max-fft <samples>]
+public final class BatchAnalyzer {
+    // Longer files are analyzed as averaged segments of this many samples, which
+    // bounds the memory used per file
+    private static final int DEFAULT_MAX_FFT = 1 << 20;
+    private static final int PNG_WIDTH = 1200;
+    private static final int PNG_HEIGHT = 600;
+
+    private final File outputDir;
+    private final boolean png;
+    private final boolean binary;
+    private final boolean features;
+    private final int maxFft;
+
+    private BatchAnalyzer(File outputDir, boolean png, boolean binary, boolean features, int maxFft) {
+        this.outputDir = outputDir;
+        this.png = png;
+        this.binary = binary;
+        this.features = features;
+        this.maxFft = maxFft;
+    }
+
+    // Returns the process exit code
+    public static int run(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        File inputDir = null;
+        File outputDir = null;
+        boolean png = false;
+        boolean binary = false;
+        boolean features = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxFft = DEFAULT_MAX_FFT;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--out": outputDir = new File(args[++i]); break;
+                    case "--png": png = true; break;
+                    case "--binary": binary = true; break;
+                    case "--features": features = true; break;
+                    case "--threads": threads = Integer.parseInt(args[++i]); break;
+                    case "--max-fft": maxFft = Integer.parseInt(args[++i]); break;
+                    default:
+                        if (args[i].startsWith("--") || inputDir != null) return usage();
+                        inputDir = new File(args[i]);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+            return usage();
+        }
+        if (inputDir == null || !inputDir.isDirectory() || threads < 1 || maxFft < 2) return usage();
+        if (outputDir == null) outputDir = new File(inputDir, "analysis");
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Cannot create output directory " + outputDir);
+            return 1;
+        }
+
+        File[] files = inputDir.listFiles((dir, name) -> name.toLowerCase(Locale.ROOT).endsWith(".wav"));
+        if (files == null) files = new File[0];
+        Arrays.sort(files);
+
+        BatchAnalyzer analyzer = new BatchAnalyzer(outputDir, png, binary, features, maxFft);
+        return analyzer.analyzeAll(files, threads);
+    }
+
+    private static int usage() {
+        System.err.println("Usage: java audiovisualizer.Audio_Visualizer --batch <dir> [--out <dir>] [--png] [--binary]"
+                + " [--features] [--threads <n>] [--max-fft <samples>]");
+        return 2;
+    }
+
+    private int analyzeAll(File[] files, int threads) {
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (File file : files) {
+                tasks.add(pool.submit(() -> {
+                    analyze(file);
+                    return null;
+                }));
+            }
+
+            int failed = 0;
+            for (int i = 0; i < files.length; i++) {
+                try {
+                    tasks.get(i).get();
+                } catch (ExecutionException ex) {
+                    failed++;
+                    System.err.println(files[i].getName() + ": " + ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return 1;
+                }
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT, "Analyzed %d files (%d failed) in %.2f s on %d threads%n",
+                    files.length - failed, failed, seconds, threads);
+            return failed == 0 ? 0 : 1;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void analyze(File file) throws Exception {
+        PcmView audio = WavFile.open(file);
+        double[] mags = Audio_Visualizer.computeFFT(audio, maxFft);
+        float sampleRate = audio.format().getSampleRate();
+
+        String base = file.getName().replaceFirst("(?i)\\.wav$", "");
+        if (binary) {
+            writeBinary(new File(outputDir, base + ".spectrum.bin"), mags, sampleRate);
+        } else {
+            writeCsv(new File(outputDir, base + ".spectrum.csv"), mags, sampleRate);
+        }
+        if (png) {
+            ImageIO.write(render(audio, mags, sampleRate), "png", new File(outputDir, base + ".png"));
+        }
+        if (features) {
+            FeatureSeries series = FeatureExtractor.extract(audio, FeatureExtractor.DEFAULT_FRAME_SIZE,
+                    FeatureExtractor.DEFAULT_HOP, WindowFunction.HANN);
+            try (BufferedWriter out = Files.newBufferedWriter(
+                    new File(outputDir, base + ".features.csv").toPath(), StandardCharsets.US_ASCII)) {
+                series.writeCsv(out);
+            }
+        }
+    }
+
+    // Bin k is at k * sampleRate / (2 * bins) Hz
+    private static void writeCsv(File file, double[] mags, float sampleRate) throws IOException {
+        double binWidth = sampleRate / (2.0 * Math.max(1, mags.length));
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.US_ASCII)) {
+            out.write("frequency_hz,magnitude\n");
+            for (int k = 0; k < mags.length; k++) {
+                out.write(String.format(Locale.ROOT, "%.3f,%.6g%n", k * binWidth, mags[k]));
+            }
+        }
+    }
+
+    // Big-endian: float sample rate, int bin count, then one float per bin
+    private static void writeBinary(File file, double[] mags, float sampleRate) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeFloat(sampleRate);
+            out.writeInt(mags.length);
+            for (double m : mags) out.writeFloat((float) m);
+        }
+    }
+
+    // Waveform above spectrum, painted by the same panels the UI uses
+    static BufferedImage render(SampleReader audio, double[] mags, float sampleRate) {
+        BufferedImage image = new BufferedImage(PNG_WIDTH, PNG_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        int waveHeight = PNG_HEIGHT * 2 / 3;
+
+        Audio_Visualizer.FinalWaveformPanel wave = new Audio_Visualizer.FinalWaveformPanel();
+        wave.setBackground(Color.WHITE);
+        wave.setSize(PNG_WIDTH, waveHeight);
+        wave.setAudio(audio);
+        wave.paint(g2);
+
+        Audio_Visualizer.FrequencyPanel spectrum = new Audio_Visualizer.FrequencyPanel();
+        spectrum.setBackground(new Color(240, 240, 255));
+        spectrum.setSize(PNG_WIDTH, PNG_HEIGHT - waveHeight);
+        spectrum.setFrequencies(mags, sampleRate);
+        g2.translate(0, waveHeight);
+        spectrum.paint(g2);
+
+        g2.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,94 @@
+package audiovisualizer;
+
+// Chirp-z (Bluestein) FFT for arbitrary lengths, including large primes. The
+// transform is rewritten as a convolution and evaluated with a power-of-two
+// FftPlan of at least 2n - 1 points.
+public final class BluesteinFft implements ComplexFft {
+    private final int n;
+    private final FftPlan convolution;
+    // exp(-pi*i*k^2/n) for k < n
+    private final double[] chirpRe;
+    private final double[] chirpIm;
+    // Transform of the conjugate chirp, pre-scaled by 1/m for the inverse pass
+    private final double[] kernelRe;
+    private final double[] kernelIm;
+
+    public BluesteinFft(int n) {
+        if (n <= 0)
+            throw new IllegalArgumentException("Length must be positive");
+        this.n = n;
+        int m = convolutionSize(n);
+        this.convolution = FftPlan.forSize(m);
+
+        chirpRe = new double[n];
+        chirpIm = new double[n];
+        long twoN = 2L * n;
+        for (int k = 0; k < n; k++) {
+            // k^2 mod 2n keeps the phase small and accurate for large k
+            double phase = -Math.PI * (((long) k * k) % twoN) / n;
+            chirpRe[k] = Math.cos(phase);
+            chirpIm[k] = Math.sin(phase);
+        }
+
+        kernelRe = new double[m];
+        kernelIm = new double[m];
+        kernelRe[0] = chirpRe[0];
+        kernelIm[0] = -chirpIm[0];
+        for (int k = 1; k < n; k++) {
+            kernelRe[k] = kernelRe[m - k] = chirpRe[k];
+            kernelIm[k] = kernelIm[m - k] = -chirpIm[k];
+        }
+        convolution.transform(kernelRe, kernelIm);
+        for (int k = 0; k < m; k++) {
+            kernelRe[k] /= m;
+            kernelIm[k] /= m;
+        }
+    }
+
+    static int convolutionSize(int n) {
+        long target = 2L * n - 1;
+        long m = 1;
+        while (m < target) m <<= 1;
+        if (m > (1 << 30))
+            throw new IllegalArgumentException("Length too large for chirp-z transform: " + n);
+        return (int) m;
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public void transform(double[] real, double[] imag) {
+        if (real.length < n || imag.length < n)
+            throw new IllegalArgumentException("Arrays shorter than plan size " + n);
+
+        int m = convolution.size();
+        double[] ar = new double[m];
+        double[] ai = new double[m];
+        for (int k = 0; k < n; k++) {
+            ar[k] = real[k] * chirpRe[k] - imag[k] * chirpIm[k];
+            ai[k] = real[k] * chirpIm[k] + imag[k] * chirpRe[k];
+        }
+
+        convolution.transform(ar, ai);
+
+        // Pointwise product, conjugated so the next forward pass acts as an inverse
+        for (int k = 0; k < m; k++) {
+            double re = ar[k] * kernelRe[k] - ai[k] * kernelIm[k];
+            double im = ar[k] * kernelIm[k] + ai[k] * kernelRe[k];
+            ar[k] = re;
+            ai[k] = -im;
+        }
+
+        convolution.transform(ar, ai);
+
+        for (int k = 0; k < n; k++) {
+            double re = ar[k];
+            double im = -ai[k];
+            real[k] = re * chirpRe[k] - im * chirpIm[k];
+            imag[k] = re * chirpIm[k] + im * chirpRe[k];
+        }
+    }
+}
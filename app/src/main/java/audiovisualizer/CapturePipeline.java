@@ -0,0 +1,229 @@
+package audiovisualizer;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+import javax.sound.sampled.AudioFormat;
+
+// Source -> capture thread -> ring -> consumer thread -> sink. The capture
+// thread only reads the source and hands blocks to the ring; the consumer
+// decodes each block once (first channel) and passes raw bytes and samples to
+// the sink. Samples alternate between two buffers, so a panel may keep the
+// previous block while the next is decoded.
+//
+// Latency is measured per block, from the source returning it to the sink
+// having processed it, and recorded in Metrics.latency("capture").
+public final class CapturePipeline {
+    public interface BlockSink {
+        void onBlock(byte[] raw, int length, float[] samples, int frames) throws IOException;
+    }
+
+    // Called once on the consumer thread when the pipeline stops by itself: the
+    // source ran out (error null) or the source or sink failed. Not called after stop().
+    public interface EndListener {
+        void ended(Exception error);
+    }
+
+    private static final int CHUNK_BYTES = 4096;
+    private static final long CONSUMER_PARK_NANOS = 10_000_000L;
+    private static final long PRODUCER_PARK_NANOS = 1_000_000L;
+    // Blocks awaiting a latency sample; more are simply not timed
+    private static final int STAMPS = 1024;
+
+    private final AudioSource source;
+    private final PcmRingBuffer ring;
+    private final BlockSink sink;
+    private final EndListener endListener;
+    private final Histogram latency = Metrics.latency("capture");
+
+    private volatile boolean running;
+    private volatile boolean stopRequested;
+    private volatile boolean captureDone;
+    private volatile Exception error;
+    private volatile long bytesCaptured;
+    private Thread captureThread;
+    private Thread consumerThread;
+
+    // Ring end offset and time of each block written, for the latency histogram
+    private final long[] stampBytes = new long[STAMPS];
+    private final long[] stampNanos = new long[STAMPS];
+    private volatile long stampsWritten;
+    private volatile long stampsRead;
+
+    public CapturePipeline(AudioSource source, int ringBytes, BlockSink sink, EndListener endListener) {
+        this.source = source;
+        this.ring = new PcmRingBuffer(ringBytes);
+        this.sink = sink;
+        this.endListener = endListener;
+    }
+
+    public AudioFormat format() {
+        return source.format();
+    }
+
+    // Opens the source and starts both threads
+    public void start() throws IOException {
+        source.open();
+        running = true;
+        consumerThread = new Thread(this::consume, "audio-consumer");
+        captureThread = new Thread(this::capture, "audio-capture");
+        consumerThread.start();
+        captureThread.start();
+    }
+
+    // Stops reading and waits until every block already captured has reached the sink
+    public void stop() {
+        stopRequested = true;
+        running = false;
+        LockSupport.unpark(captureThread);
+        LockSupport.unpark(consumerThread);
+        join(captureThread);
+        join(consumerThread);
+    }
+
+    // Waits for the pipeline to end by itself or through stop()
+    public void await() {
+        join(consumerThread);
+    }
+
+    public String describe() {
+        return source.describe();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long bytesCaptured() {
+        return bytesCaptured;
+    }
+
+    public long overruns() {
+        return ring.overruns();
+    }
+
+    public long droppedBytes() {
+        return ring.droppedBytes();
+    }
+
+    // Times the consumer emptied the ring and had to wait for the source. With a
+    // live source this is normal, about once per block; with an unthrottled
+    // replay it means the source, not the analyzers, is the bottleneck.
+    public long underruns() {
+        return ring.underruns();
+    }
+
+    public Histogram latency() {
+        return latency;
+    }
+
+    private void capture() {
+        boolean realTime = source.realTime();
+        int frameSize = source.format().getFrameSize();
+        byte[] buffer = new byte[Math.max(frameSize, CHUNK_BYTES / frameSize * frameSize)];
+        long ringBytes = 0;
+        try {
+            while (running) {
+                int count = source.read(buffer, 0, buffer.length);
+                if (count < 0) break;
+                if (count == 0) continue;
+                long now = System.nanoTime();
+                bytesCaptured += count;
+                Metrics.captureRead(count);
+                if (!realTime) {
+                    // Nothing is lost waiting for a source that is not on a clock
+                    while (running && ring.capacity() - ring.available() < count) {
+                        LockSupport.parkNanos(PRODUCER_PARK_NANOS);
+                    }
+                }
+                if (ring.write(buffer, 0, count)) {
+                    ringBytes += count;
+                    stamp(ringBytes, now);
+                } else {
+                    Metrics.captureOverrun(count);
+                }
+                LockSupport.unpark(consumerThread);
+            }
+        } catch (Exception ex) {
+            fail(ex);
+        } finally {
+            source.close();
+            ring.finish();
+            captureDone = true;
+            LockSupport.unpark(consumerThread);
+        }
+    }
+
+    private void consume() {
+        AudioFormat format = source.format();
+        // Whole frames only, so every block decodes completely
+        int frameSize = format.getFrameSize();
+        byte[] chunk = new byte[Math.max(frameSize, CHUNK_BYTES / frameSize * frameSize)];
+        PcmView chunkView = PcmView.wrap(chunk, format);
+        float[][] buffers = { new float[chunk.length / frameSize], new float[chunk.length / frameSize] };
+        int live = 0;
+        long consumed = 0;
+        long underruns = 0;
+
+        try {
+            while (!captureDone || ring.available() > 0) {
+                if (error != null) break;
+                int count = ring.read(chunk, 0, chunk.length);
+                if (count == 0) {
+                    if (ring.underruns() != underruns) {
+                        underruns = ring.underruns();
+                        Metrics.captureUnderrun();
+                    }
+                    // The capture thread unparks us after every block
+                    LockSupport.parkNanos(CONSUMER_PARK_NANOS);
+                    continue;
+                }
+                live ^= 1;
+                int frames = count / frameSize;
+                chunkView.read(0, 0, buffers[live], 0, frames);
+                sink.onBlock(chunk, count, buffers[live], frames);
+                consumed += count;
+                recordLatency(consumed);
+            }
+        } catch (Exception ex) {
+            fail(ex);
+        }
+
+        running = false;
+        join(captureThread);
+        if (!stopRequested) endListener.ended(error);
+    }
+
+    private void fail(Exception ex) {
+        if (error == null) error = ex;
+        running = false;
+    }
+
+    private void stamp(long endBytes, long nanos) {
+        long w = stampsWritten;
+        if (w - stampsRead >= STAMPS) return;
+        int i = (int) (w % STAMPS);
+        stampBytes[i] = endBytes;
+        stampNanos[i] = nanos;
+        stampsWritten = w + 1;
+    }
+
+    private void recordLatency(long consumed) {
+        long r = stampsRead;
+        long w = stampsWritten;
+        long now = System.nanoTime();
+        while (r < w && stampBytes[(int) (r % STAMPS)] <= consumed) {
+            latency.record(now - stampNanos[(int) (r % STAMPS)]);
+            r++;
+        }
+        stampsRead = r;
+    }
+
+    private static void join(Thread thread) {
+        if (thread == null || thread == Thread.currentThread()) return;
+        try {
+            thread.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package audiovisualizer;
+
+// A forward discrete Fourier transform of one fixed length, applied in place to
+// the first size() entries of a pair of real/imaginary arrays.
+public interface ComplexFft {
+    int size();
+
+    void transform(double[] real, double[] imag);
+}
@@ -0,0 +1,152 @@
+package audiovisualizer;
+
+// Streaming per-frame features: RMS, peak, zero-crossing rate, spectral
+// centroid, spectral rolloff and dominant frequency, appended to a
+// FeatureSeries. Frames follow the StftProcessor schedule (the first after
+// frameSize samples, then one every hop), and the extractor runs its own STFT,
+// so other listeners (spectrogram, live spectrum) can share the transform.
+//
+// The time-domain features are kept over a sliding frameSize window (running
+// sums and a monotonic queue for the peak), so each sample costs O(1); the
+// spectral ones cost O(bins) per frame. Not thread-safe: one thread feeds it.
+public final class FeatureExtractor implements StftProcessor.FrameListener {
+    // About 23 ms frames, 86 per second at 44.1 kHz
+    public static final int DEFAULT_FRAME_SIZE = 1024;
+    public static final int DEFAULT_HOP = 512;
+    // Fraction of spectral energy below the rolloff frequency
+    public static final double ROLLOFF_FRACTION = 0.85;
+
+    private final StftProcessor stft;
+    private final FeatureSeries series;
+    private final int frameSize;
+    private final int hop;
+    private final double binHz;
+    private int untilNextFrame;
+
+    // Last frameSize samples, and whether each one starts a zero crossing
+    private final float[] window;
+    private final boolean[] crossing;
+    private int pos;
+    private long fed;
+    private double sumSquares;
+    private int crossings;
+    private float previous;
+
+    // Indices into window of samples that may still become the frame's peak,
+    // in decreasing order of |sample|
+    private final int[] peakQueue;
+    private final long[] peakAge;
+    private int peakHead;
+    private int peakSize;
+
+    private final float[] values = new float[FeatureSeries.Feature.values().length];
+
+    public FeatureExtractor(float sampleRate, int frameSize, int hop, WindowFunction window,
+                            StftProcessor.FrameListener... others) {
+        StftProcessor.FrameListener[] listeners = new StftProcessor.FrameListener[others.length + 1];
+        listeners[0] = this;
+        System.arraycopy(others, 0, listeners, 1, others.length);
+        this.stft = new StftProcessor(frameSize, hop, window, listeners);
+        this.series = new FeatureSeries(sampleRate, frameSize, hop);
+        this.frameSize = frameSize;
+        this.hop = hop;
+        this.untilNextFrame = frameSize;
+        this.binHz = sampleRate / (double) frameSize;
+
+        this.window = new float[frameSize];
+        this.crossing = new boolean[frameSize];
+        this.peakQueue = new int[frameSize];
+        this.peakAge = new long[frameSize];
+    }
+
+    public FeatureSeries series() {
+        return series;
+    }
+
+    // Runs every sample of a reader's first channel through a new extractor
+    public static FeatureSeries extract(SampleReader audio, int frameSize, int hop, WindowFunction window) {
+        FeatureExtractor extractor = new FeatureExtractor(audio.format().getSampleRate(), frameSize, hop, window);
+        float[] block = new float[8192];
+        long frames = audio.frames();
+        for (long pos = 0; pos < frames; pos += block.length) {
+            int count = (int) Math.min(block.length, frames - pos);
+            audio.read(pos, 0, block, 0, count);
+            extractor.feed(block, 0, count);
+        }
+        return extractor.series();
+    }
+
+    public void feed(float[] samples, int offset, int length) {
+        // Runs end where the STFT emits a frame, so when it does the
+        // time-domain window holds exactly the samples it transformed
+        int end = offset + length;
+        while (offset < end) {
+            int run = Math.min(end - offset, untilNextFrame);
+            for (int i = offset; i < offset + run; i++) push(samples[i]);
+            stft.feed(samples, offset, run);
+            offset += run;
+            untilNextFrame -= run;
+            if (untilNextFrame == 0) untilNextFrame = hop;
+        }
+    }
+
+    private void push(float sample) {
+        float old = window[pos];
+        sumSquares += (double) sample * sample - (double) old * old;
+        if (crossing[pos]) crossings--;
+        boolean crosses = fed > 0 && (sample >= 0) != (previous >= 0);
+        crossing[pos] = crosses;
+        if (crosses) crossings++;
+        window[pos] = sample;
+        previous = sample;
+
+        // Drop the sample leaving the window, then everything quieter than the new one
+        if (peakSize > 0 && peakAge[peakHead] <= fed - frameSize) {
+            peakHead = (peakHead + 1) % frameSize;
+            peakSize--;
+        }
+        float magnitude = Math.abs(sample);
+        while (peakSize > 0 && Math.abs(window[peakQueue[(peakHead + peakSize - 1) % frameSize]]) <= magnitude) {
+            peakSize--;
+        }
+        int tail = (peakHead + peakSize) % frameSize;
+        peakQueue[tail] = pos;
+        peakAge[tail] = fed;
+        peakSize++;
+
+        if (++pos == frameSize) pos = 0;
+        fed++;
+    }
+
+    @Override
+    public void onFrame(float[] magnitudes) {
+        values[FeatureSeries.Feature.RMS.ordinal()] = (float) Math.sqrt(Math.max(0, sumSquares) / frameSize);
+        values[FeatureSeries.Feature.PEAK.ordinal()] = Math.abs(window[peakQueue[peakHead]]);
+        // The oldest sample's flag is a crossing from outside the frame
+        int inFrame = crossings - (crossing[pos] ? 1 : 0);
+        values[FeatureSeries.Feature.ZERO_CROSSING_RATE.ordinal()] = (float) inFrame / (frameSize - 1);
+
+        double weighted = 0, total = 0, energy = 0;
+        int dominant = magnitudes.length > 1 ? 1 : 0;
+        for (int k = 0; k < magnitudes.length; k++) {
+            double m = magnitudes[k];
+            weighted += k * m;
+            total += m;
+            energy += m * m;
+            // DC is not a frequency anyone is looking for
+            if (k > 1 && m > magnitudes[dominant]) dominant = k;
+        }
+        double threshold = energy * ROLLOFF_FRACTION, cumulative = 0;
+        int rolloff = 0;
+        while (rolloff < magnitudes.length - 1) {
+            cumulative += (double) magnitudes[rolloff] * magnitudes[rolloff];
+            if (cumulative >= threshold) break;
+            rolloff++;
+        }
+
+        values[FeatureSeries.Feature.SPECTRAL_CENTROID.ordinal()] = total > 0 ? (float) (weighted / total * binHz) : 0;
+        values[FeatureSeries.Feature.SPECTRAL_ROLLOFF.ordinal()] = energy > 0 ? (float) (rolloff * binHz) : 0;
+        values[FeatureSeries.Feature.DOMINANT_FREQUENCY.ordinal()] = total > 0 ? (float) (dominant * binHz) : 0;
+        series.append(values);
+    }
+}
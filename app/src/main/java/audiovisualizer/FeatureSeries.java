@@ -0,0 +1,140 @@
+package audiovisualizer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Time series of per-frame features produced by FeatureExtractor: one float per
+// feature per frame, stored in fixed-size chunks so it grows without copying.
+// Frame i covers samples [i * hop, i * hop + frameSize). One thread appends
+// while others read.
+public final class FeatureSeries {
+    private static final int CHUNK_SHIFT = 12;
+    private static final int CHUNK_FRAMES = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_FRAMES - 1;
+
+    public enum Feature {
+        RMS("rms", ""),
+        PEAK("peak", ""),
+        ZERO_CROSSING_RATE("zcr", ""),
+        SPECTRAL_CENTROID("centroid", "Hz"),
+        SPECTRAL_ROLLOFF("rolloff", "Hz"),
+        DOMINANT_FREQUENCY("dominant", "Hz");
+
+        private final String key;
+        private final String unit;
+
+        Feature(String key, String unit) {
+            this.key = key;
+            this.unit = unit;
+        }
+
+        // Column name in exports
+        public String key() {
+            return unit.isEmpty() ? key : key + "_" + unit.toLowerCase(Locale.ROOT);
+        }
+
+        public String unit() {
+            return unit;
+        }
+    }
+
+    private static final Feature[] FEATURES = Feature.values();
+
+    private final float sampleRate;
+    private final int frameSize;
+    private final int hop;
+    // [chunk][feature * CHUNK_FRAMES + frame in chunk]
+    private final List<float[]> chunks = new ArrayList<>();
+    private long frames;
+
+    public FeatureSeries(float sampleRate, int frameSize, int hop) {
+        this.sampleRate = sampleRate;
+        this.frameSize = frameSize;
+        this.hop = hop;
+    }
+
+    public float sampleRate() {
+        return sampleRate;
+    }
+
+    public int frameSize() {
+        return frameSize;
+    }
+
+    public int hop() {
+        return hop;
+    }
+
+    public synchronized long frames() {
+        return frames;
+    }
+
+    // Centre of frame i, in seconds from the start of the stream
+    public double timeOf(long frame) {
+        return (frame * (double) hop + frameSize / 2.0) / sampleRate;
+    }
+
+    // Last frame whose centre is at or before the given time, or -1
+    public long frameAt(double seconds) {
+        double frame = (seconds * sampleRate - frameSize / 2.0) / hop;
+        return frame < 0 ? -1 : Math.min(frames() - 1, (long) Math.floor(frame));
+    }
+
+    // values is indexed by Feature.ordinal()
+    synchronized void append(float[] values) {
+        int index = (int) (frames & CHUNK_MASK);
+        if (index == 0) chunks.add(new float[FEATURES.length * CHUNK_FRAMES]);
+        float[] chunk = chunks.get(chunks.size() - 1);
+        for (int f = 0; f < FEATURES.length; f++) {
+            chunk[f * CHUNK_FRAMES + index] = values[f];
+        }
+        frames++;
+    }
+
+    public synchronized float get(Feature feature, long frame) {
+        if (frame < 0 || frame >= frames)
+            throw new IllegalArgumentException("No frame " + frame + " in " + frames + " frames");
+        float[] chunk = chunks.get((int) (frame >> CHUNK_SHIFT));
+        return chunk[feature.ordinal() * CHUNK_FRAMES + ((int) frame & CHUNK_MASK)];
+    }
+
+    // Copies length values of one feature, starting at frame, into dst
+    public synchronized void read(Feature feature, long frame, float[] dst, int offset, int length) {
+        if (frame < 0 || length < 0 || frame + length > frames)
+            throw new IllegalArgumentException("Frames " + frame + ".." + (frame + length) + " out of " + frames);
+        int done = 0;
+        while (done < length) {
+            long pos = frame + done;
+            int index = (int) pos & CHUNK_MASK;
+            int run = Math.min(length - done, CHUNK_FRAMES - index);
+            float[] chunk = chunks.get((int) (pos >> CHUNK_SHIFT));
+            System.arraycopy(chunk, feature.ordinal() * CHUNK_FRAMES + index, dst, offset + done, run);
+            done += run;
+        }
+    }
+
+    // One row per frame: time_s followed by every feature
+    public void writeCsv(Writer out) throws IOException {
+        StringBuilder row = new StringBuilder("time_s");
+        for (Feature f : FEATURES) row.append(',').append(f.key());
+        out.write(row.append('\n').toString());
+
+        long count = frames();
+        float[] values = new float[FEATURES.length];
+        for (long i = 0; i < count; i++) {
+            row.setLength(0);
+            synchronized (this) {
+                float[] chunk = chunks.get((int) (i >> CHUNK_SHIFT));
+                for (int f = 0; f < FEATURES.length; f++) {
+                    values[f] = chunk[f * CHUNK_FRAMES + ((int) i & CHUNK_MASK)];
+                }
+            }
+            row.append(String.format(Locale.ROOT, "%.5f", timeOf(i)));
+            for (float v : values) row.append(',').append(String.format(Locale.ROOT, "%.6g", v));
+            out.write(row.append('\n').toString());
+        }
+    }
+}
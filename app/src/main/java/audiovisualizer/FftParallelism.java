@@ -0,0 +1,85 @@
+package audiovisualizer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+// Fork/join support for large transforms. A pass over an array is split into
+// index ranges that touch disjoint elements; every element is still computed by
+// the same expression as in a sequential run, so the results are bit-for-bit
+// identical. Transforms below THRESHOLD points stay on the calling thread.
+//
+// Work runs in the caller's pool when it is already a fork/join task (e.g. in
+// batch mode), otherwise in the common pool.
+public final class FftParallelism {
+    // Smallest transform split across threads
+    public static final int THRESHOLD = 1 << 16;
+    // Ranges are not split below this many loop iterations
+    static final int MIN_CHUNK = 1 << 11;
+
+    private static volatile boolean enabled = true;
+
+    private FftParallelism() {
+    }
+
+    // Body of a parallel loop over [from, to)
+    interface RangeBody {
+        void run(int from, int to);
+    }
+
+    // Turns parallel transforms on or off globally, e.g. to compare both paths
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // Whether a transform of n points should be split
+    static boolean useFor(int n) {
+        return enabled && n >= THRESHOLD && pool().getParallelism() > 1;
+    }
+
+    // Runs body over [from, to), split into chunks of at least minChunk
+    // iterations, and returns when every chunk is done
+    static void forRange(int from, int to, int minChunk, RangeBody body) {
+        ForkJoinPool pool = pool();
+        // A few chunks per thread so uneven progress still balances
+        int chunk = Math.max(minChunk, (to - from) / (4 * pool.getParallelism()) + 1);
+        RangeTask task = new RangeTask(from, to, chunk, body);
+        if (ForkJoinTask.inForkJoinPool()) {
+            task.invoke();
+        } else {
+            pool.invoke(task);
+        }
+    }
+
+    private static ForkJoinPool pool() {
+        return ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final int chunk;
+        private final RangeBody body;
+
+        RangeTask(int from, int to, int chunk, RangeBody body) {
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RangeTask(from, mid, chunk, body), new RangeTask(mid, to, chunk, body));
+        }
+    }
+}
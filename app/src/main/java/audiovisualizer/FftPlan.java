@@ -0,0 +1,315 @@
+package audiovisualizer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Radix-2 FFT for one power-of-two size. The twiddle factors and the
+// bit-reversal permutation are computed once per size and shared through a cache,
+// so transforms do no trig calls and, below FftParallelism.THRESHOLD, no
+// allocation. Stages of at least Kernels.lanes() butterflies per group run
+// through the active Kernels, which may be vectorized.
+public final class FftPlan implements ComplexFft {
+    private static final Map<Integer, FftPlan> CACHE = new ConcurrentHashMap<>();
+    // Block handled by one thread in the early stages of a parallel transform
+    // (16K points, 256 KB of data, fits in L2)
+    private static final int PARALLEL_BLOCK = 1 << 14;
+
+    private final int n;
+    private final int[] bitReverse;
+    // exp(-2*pi*i*k/n) for k < n/2
+    private final double[] cos;
+    private final double[] sin;
+    // The same twiddles stage by stage for the vector kernels, which need them
+    // contiguous: the stage with halfsize h < n/2 at offset h - 1, entry j being
+    // exp(-2*pi*i*j/(2h)). The last stage reads cos/sin directly. Built on
+    // first use, since scalar transforms never need them; stageSin is
+    // published through the volatile stageCos.
+    private volatile double[] stageCos;
+    private double[] stageSin;
+
+    // Plan of size n/2, used by the real-input path. Looked up lazily because the
+    // cache does not allow recursive lookups while a plan is being built.
+    private volatile FftPlan half;
+
+    private FftPlan(int n) {
+        this.n = n;
+
+        int logN = Integer.numberOfTrailingZeros(n);
+        bitReverse = new int[n];
+        for (int i = 1; i < n; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - logN);
+        }
+
+        cos = new double[n / 2];
+        sin = new double[n / 2];
+        for (int k = 0; k < n / 2; k++) {
+            double phase = -2 * Math.PI * k / n;
+            cos[k] = Math.cos(phase);
+            sin[k] = Math.sin(phase);
+        }
+    }
+
+    public static FftPlan forSize(int n) {
+        if (n <= 0 || (n & (n - 1)) != 0)
+            throw new IllegalArgumentException("Length must be power of 2");
+        return CACHE.computeIfAbsent(n, FftPlan::new);
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    // In-place complex forward transform of n points. Large transforms are
+    // split across threads (see FftParallelism) with identical results.
+    @Override
+    public void transform(double[] real, double[] imag) {
+        if (real.length < n || imag.length < n)
+            throw new IllegalArgumentException("Arrays shorter than plan size " + n);
+
+        if (FftParallelism.useFor(n)) {
+            transformParallel(real, imag);
+            return;
+        }
+        bitReverse(real, imag, 1, n);
+        blockStages(real, imag, 0, n);
+    }
+
+    // Kernels for stages of the given halfsize, or null for the scalar loop
+    private Kernels kernelsFor(int halfsize) {
+        Kernels kernels = Kernels.active();
+        return kernels.lanes() > 1 && halfsize >= kernels.lanes() ? kernels : null;
+    }
+
+    // Contiguous twiddles of the stage of the given halfsize start at
+    // twiddleOffset in twiddleCos/twiddleSin; call twiddleCos first
+    private double[] twiddleCos(int halfsize) {
+        if (halfsize == n / 2) return cos;
+        double[] c = stageCos;
+        if (c == null) c = buildStageTwiddles();
+        return c;
+    }
+
+    private double[] twiddleSin(int halfsize) {
+        return halfsize == n / 2 ? sin : stageSin;
+    }
+
+    private int twiddleOffset(int halfsize) {
+        return halfsize == n / 2 ? 0 : halfsize - 1;
+    }
+
+    private synchronized double[] buildStageTwiddles() {
+        if (stageCos != null) return stageCos;
+        int count = n / 2 - 1;
+        double[] c = new double[count];
+        double[] s = new double[count];
+        for (int h = 1; h < n / 2; h *= 2) {
+            int stride = n / (2 * h);
+            for (int j = 0; j < h; j++) {
+                c[h - 1 + j] = cos[j * stride];
+                s[h - 1 + j] = sin[j * stride];
+            }
+        }
+        stageSin = s;
+        stageCos = c;
+        return c;
+    }
+
+    // Stages up to PARALLEL_BLOCK points run block by block, each block on one
+    // thread; the remaining stages are split by butterfly index.
+    private void transformParallel(double[] real, double[] imag) {
+        FftParallelism.forRange(1, n, FftParallelism.MIN_CHUNK, (from, to) -> bitReverse(real, imag, from, to));
+        FftParallelism.forRange(0, n / PARALLEL_BLOCK, 1,
+                (from, to) -> {
+                    for (int block = from; block < to; block++) {
+                        blockStages(real, imag, block * PARALLEL_BLOCK, PARALLEL_BLOCK);
+                    }
+                });
+        for (int size = 2 * PARALLEL_BLOCK; size <= n; size *= 2) {
+            int stageSize = size;
+            FftParallelism.forRange(0, n / 2, FftParallelism.MIN_CHUNK,
+                    (from, to) -> butterflies(real, imag, stageSize, from, to));
+        }
+    }
+
+    // Swaps each pair (i, bitReverse[i]) whose smaller index is in [from, to)
+    private void bitReverse(double[] real, double[] imag, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                double temp = real[i]; real[i] = real[j]; real[j] = temp;
+                temp = imag[i]; imag[i] = imag[j]; imag[j] = temp;
+            }
+        }
+    }
+
+    // All stages of size <= length on the bit-reversed block [offset, offset + length)
+    private void blockStages(double[] real, double[] imag, int offset, int length) {
+        int end = offset + length;
+
+        // First stage has unit twiddles only
+        for (int i = offset; i + 1 < end; i += 2) {
+            double tre = real[i + 1];
+            double tim = imag[i + 1];
+            real[i + 1] = real[i] - tre;
+            imag[i + 1] = imag[i] - tim;
+            real[i] += tre;
+            imag[i] += tim;
+        }
+
+        for (int size = 4, stride = n / 4; size <= length; size *= 2, stride /= 2) {
+            int halfsize = size / 2;
+            Kernels kernels = kernelsFor(halfsize);
+            if (kernels != null) {
+                double[] wr = twiddleCos(halfsize);
+                double[] wi = twiddleSin(halfsize);
+                int base = twiddleOffset(halfsize);
+                for (int i = offset; i < end; i += size) {
+                    kernels.butterflies(real, imag, i, i + halfsize, wr, wi, base, halfsize);
+                }
+                continue;
+            }
+            for (int i = offset; i < end; i += size) {
+                for (int j = 0, k = 0; j < halfsize; j++, k += stride) {
+                    int a = i + j;
+                    int b = a + halfsize;
+                    double re = cos[k];
+                    double im = sin[k];
+                    double tre = re * real[b] - im * imag[b];
+                    double tim = re * imag[b] + im * real[b];
+
+                    real[b] = real[a] - tre;
+                    imag[b] = imag[a] - tim;
+
+                    real[a] += tre;
+                    imag[a] += tim;
+                }
+            }
+        }
+    }
+
+    // Butterflies [from, to) of the stage of the given size, numbered group by group
+    private void butterflies(double[] real, double[] imag, int size, int from, int to) {
+        int halfsize = size / 2;
+        int stride = n / size;
+        Kernels kernels = kernelsFor(halfsize);
+        double[] wr = kernels != null ? twiddleCos(halfsize) : null;
+        double[] wi = kernels != null ? twiddleSin(halfsize) : null;
+        int base = twiddleOffset(halfsize);
+        for (int t = from; t < to; ) {
+            int group = t / halfsize;
+            int j = t - group * halfsize;
+            int groupEnd = Math.min(to, (group + 1) * halfsize);
+            if (kernels != null) {
+                int a = group * size + j;
+                kernels.butterflies(real, imag, a, a + halfsize, wr, wi, base + j, groupEnd - t);
+                t = groupEnd;
+                continue;
+            }
+            for (int a = group * size + j, k = j * stride; t < groupEnd; t++, a++, k += stride) {
+                int b = a + halfsize;
+                double re = cos[k];
+                double im = sin[k];
+                double tre = re * real[b] - im * imag[b];
+                double tim = re * imag[b] + im * real[b];
+
+                real[b] = real[a] - tre;
+                imag[b] = imag[a] - tim;
+
+                real[a] += tre;
+                imag[a] += tim;
+            }
+        }
+    }
+
+    // Forward transform of n real samples. Writes bins 0..n/2 into real/imag,
+    // which must hold at least n/2 + 1 values each.
+    public void realForward(double[] input, double[] real, double[] imag) {
+        if (input.length < n)
+            throw new IllegalArgumentException("Input shorter than plan size " + n);
+        if (n == 1) {
+            real[0] = input[0];
+            imag[0] = 0;
+            return;
+        }
+        int m = n / 2;
+        for (int k = 0; k < m; k++) {
+            real[k] = input[2 * k];
+            imag[k] = input[2 * k + 1];
+        }
+        realForwardPacked(real, imag);
+    }
+
+    // Same as realForward, but the caller has already packed the samples as
+    // real[k] = x[2k], imag[k] = x[2k+1] for k < n/2. This lets callers decode
+    // straight into the output arrays without a separate sample buffer.
+    public void realForwardPacked(double[] real, double[] imag) {
+        int m = n / 2;
+        if (m == 0) {
+            imag[0] = 0;
+            return;
+        }
+        if (real.length < m + 1 || imag.length < m + 1)
+            throw new IllegalArgumentException("Output arrays need " + (m + 1) + " bins");
+
+        halfPlan().transform(real, imag);
+
+        splitRealSpectrum(real, imag, m, cos, sin);
+    }
+
+    // Turns the m-point transform of packed real samples (even samples in real,
+    // odd samples in imag) into bins 0..m of the 2m-point real spectrum.
+    // cos/sin must hold exp(-2*pi*i*k/(2m)) for k <= m/2.
+    static void splitRealSpectrum(double[] real, double[] imag, int m, double[] cos, double[] sin) {
+        double z0r = real[0];
+        double z0i = imag[0];
+        real[0] = z0r + z0i;
+        imag[0] = 0;
+        real[m] = z0r - z0i;
+        imag[m] = 0;
+
+        // Each k also writes bin m - k, so ranges of k touch disjoint bins
+        int last = m / 2 + 1;
+        if (FftParallelism.useFor(2 * m)) {
+            FftParallelism.forRange(1, last, FftParallelism.MIN_CHUNK,
+                    (from, to) -> splitRange(real, imag, m, cos, sin, from, to));
+        } else {
+            splitRange(real, imag, m, cos, sin, 1, last);
+        }
+    }
+
+    private static void splitRange(double[] real, double[] imag, int m, double[] cos, double[] sin,
+                                   int from, int to) {
+        for (int k = from; k < to; k++) {
+            int j = m - k;
+            double ar = real[k], ai = imag[k];
+            double br = real[j], bi = imag[j];
+
+            double evenRe = (ar + br) * 0.5;
+            double evenIm = (ai - bi) * 0.5;
+            double oddRe = (ai + bi) * 0.5;
+            double oddIm = (br - ar) * 0.5;
+
+            double wr = cos[k];
+            double wi = sin[k];
+            double tre = wr * oddRe - wi * oddIm;
+            double tim = wr * oddIm + wi * oddRe;
+
+            real[k] = evenRe + tre;
+            imag[k] = evenIm + tim;
+            if (j != k) {
+                real[j] = evenRe - tre;
+                imag[j] = tim - evenIm;
+            }
+        }
+    }
+
+    private FftPlan halfPlan() {
+        FftPlan h = half;
+        if (h == null) {
+            h = forSize(n / 2);
+            half = h;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,126 @@
+package audiovisualizer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Chooses and caches FFT implementations for arbitrary lengths. Powers of two use
+// FftPlan, sizes with small prime factors use MixedRadixFft and everything else
+// uses BluesteinFft. A rough operation-count model decides between those, and
+// between an exact transform and zero-padding to a faster size.
+public final class FftPlanner {
+    // Non power-of-two plans hold O(n) tables, so only a few recent sizes are kept
+    private static final int MAX_CACHED_PLANS = 8;
+
+    private static final Map<Integer, ComplexFft> PLANS = lruCache();
+    private static final Map<Integer, RealFft> REAL_PLANS = lruCache();
+
+    private FftPlanner() {
+    }
+
+    private static <V> Map<Integer, V> lruCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<Integer, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, V> eldest) {
+                return size() > MAX_CACHED_PLANS;
+            }
+        });
+    }
+
+    // Exact-length complex transform
+    public static ComplexFft plan(int n) {
+        if (n <= 0)
+            throw new IllegalArgumentException("Length must be positive");
+        if (isPowerOfTwo(n)) return FftPlan.forSize(n);
+
+        ComplexFft plan = PLANS.get(n);
+        if (plan == null) {
+            plan = mixedRadixCost(n) <= bluesteinCost(n) ? new MixedRadixFft(n) : new BluesteinFft(n);
+            PLANS.put(n, plan);
+        }
+        return plan;
+    }
+
+    // Exact-length transform of n real samples; n must be even
+    public static RealFft realPlan(int n) {
+        RealFft plan = REAL_PLANS.get(n);
+        if (plan == null) {
+            if (n < 2 || (n & 1) != 0)
+                throw new IllegalArgumentException("Real transform length must be even: " + n);
+            plan = new RealFft(n, plan(n / 2));
+            REAL_PLANS.put(n, plan);
+        }
+        return plan;
+    }
+
+    // Length to use for a real transform covering all of the given samples: the
+    // sample count itself (rounded up to even for the packed real path), or a
+    // zero-padded 2^a * 3^b * 5^c size when the model says that is cheaper.
+    public static int realTransformLength(int samples) {
+        if (samples <= 0)
+            throw new IllegalArgumentException("Sample count must be positive");
+        int exact = samples + (samples & 1);
+        int padded = 2 * nextFastSize(exact / 2);
+        if (padded == exact) return exact;
+        return realCost(padded) < realCost(exact) ? padded : exact;
+    }
+
+    // Smallest 2^a * 3^b * 5^c that is >= n
+    public static int nextFastSize(int n) {
+        if (n <= 1) return 1;
+        long best = Long.MAX_VALUE;
+        for (long p5 = 1; p5 < best; p5 *= 5) {
+            for (long p35 = p5; p35 < best; p35 *= 3) {
+                long candidate = p35;
+                while (candidate < n) candidate *= 2;
+                if (candidate < best) best = candidate;
+                if (p35 >= n) break;
+            }
+            if (p5 >= n) break;
+        }
+        if (best > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Length too large: " + n);
+        return (int) best;
+    }
+
+    // Estimated work for an n-point complex transform, in radix-2 butterfly units
+    // per point per stage. Only the relative values matter.
+    static double complexCost(int n) {
+        if (isPowerOfTwo(n)) return powerOfTwoCost(n);
+        return Math.min(mixedRadixCost(n), bluesteinCost(n));
+    }
+
+    private static double realCost(int n) {
+        return complexCost(n / 2) + n;
+    }
+
+    private static double powerOfTwoCost(long n) {
+        return n * Math.max(1, 63 - Long.numberOfLeadingZeros(n));
+    }
+
+    private static double mixedRadixCost(int n) {
+        double perPoint = 0;
+        for (int r : MixedRadixFft.factor(n)) {
+            switch (r) {
+                case 2: perPoint += 1.0; break;
+                case 3: perPoint += 1.8; break;
+                case 4: perPoint += 1.7; break;
+                case 5: perPoint += 2.6; break;
+                default: perPoint += 1.2 * r; break;
+            }
+        }
+        // Out-of-place stages and strided twiddle access cost a little more than
+        // the in-place radix-2 kernel
+        return 1.2 * n * perPoint;
+    }
+
+    private static double bluesteinCost(int n) {
+        long m = 1;
+        while (m < 2L * n - 1) m <<= 1;
+        return 3 * powerOfTwoCost(m) + 4.0 * m;
+    }
+
+    private static boolean isPowerOfTwo(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+}
@@ -0,0 +1,104 @@
+package audiovisualizer;
+
+// Inner loops of the FFT butterflies, magnitude spectra and 16-bit sample
+// decoding (mono or one channel of interleaved audio). The methods here are
+// the scalar versions. When the JVM runs with
+// --add-modules jdk.incubator.vector, active() returns VectorKernels instead,
+// which does the same arithmetic several lanes at a time with the Vector API
+// and therefore gives bit-for-bit identical results (no fused multiply-add).
+//
+// VectorKernels is compiled only on JDK 17 and later (the "vector" profile in
+// app/pom.xml) and looked up by name, so everything else still targets Java 8;
+// if it is missing, cannot be linked, or the CPU has no useful vector width,
+// the scalar versions are used.
+public class Kernels {
+    private static final Kernels SCALAR = new Kernels();
+    private static final Kernels VECTOR = loadVector();
+
+    private static volatile boolean vectorEnabled = VECTOR != null;
+
+    Kernels() {
+    }
+
+    private static Kernels loadVector() {
+        try {
+            Kernels kernels = (Kernels) Class.forName("audiovisualizer.VectorKernels")
+                    .getDeclaredConstructor().newInstance();
+            return kernels.lanes() > 1 ? kernels : null;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            // Not compiled in, older JDK, or the incubator module is not enabled
+            return null;
+        }
+    }
+
+    public static Kernels active() {
+        return vectorEnabled ? VECTOR : SCALAR;
+    }
+
+    public static boolean vectorAvailable() {
+        return VECTOR != null;
+    }
+
+    // Switches between the vector and scalar kernels globally, e.g. to compare
+    // both paths; has no effect when the vector kernels are not available
+    public static void setVectorEnabled(boolean on) {
+        vectorEnabled = on && VECTOR != null;
+    }
+
+    public static boolean isVectorEnabled() {
+        return vectorEnabled;
+    }
+
+    public String name() {
+        return "scalar";
+    }
+
+    // Doubles processed per vector operation; runs shorter than this are not
+    // worth handing to the vector kernels
+    public int lanes() {
+        return 1;
+    }
+
+    // count radix-2 butterflies: for j < count, with twiddle w = (wr[t + j], wi[t + j]),
+    // x[a + j], x[b + j] become x[a + j] + w * x[b + j] and x[a + j] - w * x[b + j]
+    public void butterflies(double[] real, double[] imag, int a, int b, double[] wr, double[] wi, int t, int count) {
+        for (int j = 0; j < count; j++) {
+            double re = wr[t + j];
+            double im = wi[t + j];
+            double tre = re * real[b + j] - im * imag[b + j];
+            double tim = re * imag[b + j] + im * real[b + j];
+
+            real[b + j] = real[a + j] - tre;
+            imag[b + j] = imag[a + j] - tim;
+
+            real[a + j] += tre;
+            imag[a + j] += tim;
+        }
+    }
+
+    // dst[i] = |real[i] + i imag[i]| for i < count
+    public void magnitudes(double[] real, double[] imag, double[] dst, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[i] = Math.sqrt(real[i] * real[i] + imag[i] * imag[i]);
+        }
+    }
+
+    // Signed 16-bit samples scaled to [-1, 1)
+    public void shortsToFloats(short[] src, int srcOffset, float[] dst, int dstOffset, int count) {
+        for (int i = 0; i < count; i++) {
+            dst[dstOffset + i] = src[srcOffset + i] * (1f / 32768);
+        }
+    }
+
+    // Every stride-th sample from src[srcOffset] on, scaled the same way: one
+    // channel of interleaved 16-bit audio with stride channels
+    public void shortsToFloats(short[] src, int srcOffset, int stride, float[] dst, int dstOffset, int count) {
+        if (stride == 1) {
+            shortsToFloats(src, srcOffset, dst, dstOffset, count);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            dst[dstOffset + i] = src[srcOffset + i * stride] * (1f / 32768);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package audiovisualizer;
+
+import java.io.IOException;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.TargetDataLine;
+
+// The default capture device (microphone)
+public final class LineSource implements AudioSource {
+    private final AudioFormat format;
+    private TargetDataLine line;
+
+    public LineSource(AudioFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public AudioFormat format() {
+        return format;
+    }
+
+    @Override
+    public void open() throws IOException {
+        try {
+            DataLine.Info info = new DataLine.Info(TargetDataLine.class, format);
+            line = (TargetDataLine) AudioSystem.getLine(info);
+            line.open(format);
+            line.start();
+        } catch (LineUnavailableException | IllegalArgumentException ex) {
+            throw new IOException("Cannot open audio input: " + ex.getMessage(), ex);
+        }
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        int frameSize = format.getFrameSize();
+        return line.read(buffer, offset, length / frameSize * frameSize);
+    }
+
+    @Override
+    public boolean realTime() {
+        return true;
+    }
+
+    @Override
+    public String describe() {
+        return "microphone";
+    }
+
+    @Override
+    public void close() {
+        if (line != null) {
+            line.stop();
+            line.close();
+            line = null;
+        }
+    }
+}
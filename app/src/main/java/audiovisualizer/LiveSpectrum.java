@@ -0,0 +1,36 @@
+package audiovisualizer;
+
+import java.util.Arrays;
+
+// Latest STFT frame, handed from the capture thread to the Swing thread. Both
+// sides copy into arrays allocated once, so steady-state updates do not allocate.
+public final class LiveSpectrum implements StftProcessor.FrameListener {
+    private final float[] latest;
+    private long version;
+
+    public LiveSpectrum(int bins) {
+        latest = new float[bins];
+    }
+
+    @Override
+    public synchronized void onFrame(float[] magnitudes) {
+        System.arraycopy(magnitudes, 0, latest, 0, latest.length);
+        version++;
+    }
+
+    // Copies the latest frame into dst (up to dst.length bins) unless it is the
+    // one the caller already has. Returns the version of the frame now in dst.
+    public synchronized long copyIfNewer(long seenVersion, double[] dst) {
+        if (version == seenVersion) return version;
+        int bins = Math.min(dst.length, latest.length);
+        for (int i = 0; i < bins; i++) {
+            dst[i] = latest[i];
+        }
+        return version;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(latest, 0);
+        version = 0;
+    }
+}
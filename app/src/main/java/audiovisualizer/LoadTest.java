@@ -0,0 +1,202 @@
+package audiovisualizer;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// Headless capture-to-display load test: runs a synthetic or replayed source
+// through the same pipeline, analyzers and panels as a live recording, with
+// the panels painted off screen at the UI's refresh rate, then prints the
+// throughput (in multiples of real time), overruns, block latency, garbage
+// collections and paint times. The audio is kept off heap as a recording would.
+//
+//   java audiovisualizer.Audio_Visualizer --loadtest [sweep|noise|multitone|<file.wav>]
+//                                         [--seconds <s>] [--speed <x>] [--fps <n>]
+//
+// Speed 0 (the default) is unthrottled; --seconds applies to synthetic sources.
+public final class LoadTest {
+    private static final double DEFAULT_SECONDS = 60;
+    private static final int DEFAULT_FPS = 30;
+    private static final int RING_BYTES = 1 << 20;
+    private static final int FRAME_SIZE = 1024;
+    private static final int HOP = 512;
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 150;
+    private static final double[] TONES = { 50, 60, 1000 };
+
+    private LoadTest() {
+    }
+
+    // Returns the process exit code
+    public static int run(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        String what = "sweep";
+        double seconds = DEFAULT_SECONDS;
+        double speed = 0;
+        int fps = DEFAULT_FPS;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--seconds": seconds = Double.parseDouble(args[++i]); break;
+                    case "--speed": speed = Double.parseDouble(args[++i]); break;
+                    case "--fps": fps = Integer.parseInt(args[++i]); break;
+                    default:
+                        if (args[i].startsWith("--")) return usage();
+                        what = args[i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+            return usage();
+        }
+        if (!(seconds > 0) || speed < 0 || fps < 1) return usage();
+
+        AudioSource source;
+        switch (what) {
+            case "sweep": source = new SyntheticSource(SyntheticSource.Signal.SWEEP, 44100, seconds, speed); break;
+            case "noise": source = new SyntheticSource(SyntheticSource.Signal.NOISE, 44100, seconds, speed); break;
+            case "multitone":
+                source = new SyntheticSource(SyntheticSource.Signal.MULTI_TONE, 44100, seconds, speed);
+                break;
+            default:
+                try {
+                    source = new ReplaySource(WavFile.open(new File(what)), speed, false);
+                } catch (IOException | UnsupportedAudioFileException ex) {
+                    System.err.println(what + ": " + ex.getMessage());
+                    return 1;
+                }
+        }
+
+        try {
+            return new LoadTest().measure(source, fps);
+        } catch (IOException ex) {
+            System.err.println("Load test failed: " + ex.getMessage());
+            return 1;
+        }
+    }
+
+    private static int usage() {
+        System.err.println("Usage: java audiovisualizer.Audio_Visualizer --loadtest [sweep|noise|multitone|<file.wav>]"
+                + " [--seconds <s>] [--speed <x>] [--fps <n>]");
+        return 2;
+    }
+
+    private int measure(AudioSource source, int fps) throws IOException {
+        float sampleRate = source.format().getSampleRate();
+        SpectrogramBuffer spectrogram = new SpectrogramBuffer(400, FRAME_SIZE / 2 + 1);
+        LiveSpectrum spectrum = new LiveSpectrum(FRAME_SIZE / 2 + 1);
+        FeatureExtractor features = new FeatureExtractor(sampleRate, FRAME_SIZE, HOP, WindowFunction.HANN,
+                spectrogram, spectrum);
+        ScopeBuffer scope = new ScopeBuffer(4096, 64, 1024);
+        ToneTracker tones = new ToneTracker(sampleRate, TONES, Math.round(sampleRate * 0.1f), -30, 3, null);
+
+        Audio_Visualizer.LiveWaveformPanel wave = new Audio_Visualizer.LiveWaveformPanel();
+        Audio_Visualizer.FrequencyPanel frequency = new Audio_Visualizer.FrequencyPanel();
+        Audio_Visualizer.SpectrogramPanel spectrogramPanel = new Audio_Visualizer.SpectrogramPanel();
+        Audio_Visualizer.ToneMeterPanel meters = new Audio_Visualizer.ToneMeterPanel();
+        wave.setSize(WIDTH, HEIGHT);
+        frequency.setSize(WIDTH / 2, HEIGHT);
+        spectrogramPanel.setSize(WIDTH / 2, HEIGHT);
+        meters.setSize(WIDTH / 4, HEIGHT);
+        wave.setBackground(Color.LIGHT_GRAY);
+        frequency.setBackground(Color.WHITE);
+        spectrogramPanel.setBackground(Color.WHITE);
+        meters.setBackground(Color.WHITE);
+        wave.setSource(scope);
+        spectrogramPanel.setSource(spectrogram);
+        spectrogramPanel.setSampleRate(sampleRate);
+        meters.setTracker(tones);
+
+        // Same per-block work as an in-memory recording
+        SegmentedByteStore store = new SegmentedByteStore(source.format().getFrameSize());
+        CapturePipeline pipeline = new CapturePipeline(source, RING_BYTES, (raw, length, samples, frames) -> {
+            store.write(raw, 0, length);
+            tones.feed(samples, 0, frames);
+            features.feed(samples, 0, frames);
+            scope.append(samples, 0, frames);
+        }, error -> {
+            if (error != null) error.printStackTrace();
+        });
+
+        Metrics.latency("capture").reset();
+        for (String name : new String[] { "liveWaveform", "spectrum", "spectrogram", "toneMeters" }) {
+            Metrics.paint(name).reset();
+        }
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        double[] magnitudes = new double[FRAME_SIZE / 2];
+        long seen = 0;
+        long frameNanos = 1_000_000_000L / fps;
+        int painted = 0;
+
+        long[] gcBefore = collections();
+        long start = System.nanoTime();
+        pipeline.start();
+        // Stands in for the Swing refresh timer
+        long next = start;
+        while (pipeline.isRunning()) {
+            next += frameNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+            seen = spectrum.copyIfNewer(seen, magnitudes);
+            frequency.setFrequencies(magnitudes, sampleRate);
+            meters.refresh();
+            Graphics2D g = image.createGraphics();
+            wave.paint(g);
+            frequency.paint(g);
+            spectrogramPanel.paint(g);
+            meters.paint(g);
+            g.dispose();
+            painted++;
+        }
+        pipeline.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long[] gc = collections();
+        long stored = store.size();
+        store.close();
+
+        double audioSeconds = pipeline.bytesCaptured() / (double) source.format().getFrameSize() / sampleRate;
+        Histogram latency = pipeline.latency();
+        System.out.printf(Locale.ROOT, "Source: %s, %.0f Hz, %.1f s of audio%n",
+                source.describe(), sampleRate, audioSeconds);
+        System.out.printf(Locale.ROOT,
+                "Processed in %.2f s (%.1fx real time), %d overruns, %d bytes dropped, %d underruns%n",
+                elapsed, audioSeconds / elapsed, pipeline.overruns(), pipeline.droppedBytes(), pipeline.underruns());
+        System.out.printf(Locale.ROOT, "Block latency (source to analyzers): p50 %s, p99 %s, max %s over %d blocks%n",
+                millis(latency.percentile(0.5)), millis(latency.percentile(0.99)), millis(latency.max()),
+                latency.count());
+        if (!source.realTime()) {
+            System.out.println("  (unthrottled: the source keeps the ring full, so this is mostly queueing)");
+        }
+        System.out.printf(Locale.ROOT, "Stored %d MB off heap; %d collections, %d ms in GC%n",
+                stored >> 20, gc[0] - gcBefore[0], gc[1] - gcBefore[1]);
+        System.out.printf(Locale.ROOT, "Painted %d frames at %d fps:%n", painted, fps);
+        for (String name : new String[] { "liveWaveform", "spectrum", "spectrogram", "toneMeters" }) {
+            Histogram paint = Metrics.paint(name);
+            System.out.printf(Locale.ROOT, "  %-13s p50 %s, p99 %s%n", name,
+                    millis(paint.percentile(0.5)), millis(paint.percentile(0.99)));
+        }
+        return 0;
+    }
+
+    // Collection count and milliseconds over all collectors
+    private static long[] collections() {
+        long[] total = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total[0] += Math.max(0, gc.getCollectionCount());
+            total[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1e6);
+    }
+}
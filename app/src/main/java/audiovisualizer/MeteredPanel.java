@@ -0,0 +1,28 @@
+package audiovisualizer;
+
+import java.awt.Graphics;
+import javax.swing.JPanel;
+
+// Panel that reports its repaint requests and paint durations to Metrics
+public class MeteredPanel extends JPanel {
+    private final Histogram paintTime;
+
+    public MeteredPanel(String name) {
+        paintTime = Metrics.paint(name);
+    }
+
+    // Every repaint() variant ends up here
+    @Override
+    public void repaint(long tm, int x, int y, int width, int height) {
+        Metrics.repaintRequested();
+        super.repaint(tm, x, y, width, height);
+    }
+
+    @Override
+    public void paint(Graphics g) {
+        long start = System.nanoTime();
+        super.paint(g);
+        paintTime.recordSince(start);
+        Metrics.painted();
+    }
+}
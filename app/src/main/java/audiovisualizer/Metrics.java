@@ -0,0 +1,257 @@
+package audiovisualizer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide counters and histograms for the capture path, the FFTs and
+// painting. Recording is a nanoTime call and a few atomic adds, so it stays on
+// in normal use. Read them over JMX (audiovisualizer:type=Metrics, e.g. with
+// jconsole) or have them written periodically to stdout or a CSV file.
+public final class Metrics implements MetricsMXBean {
+    public static final String OBJECT_NAME = "audiovisualizer:type=Metrics";
+
+    private static final LongAdder captureReads = new LongAdder();
+    private static final LongAdder captureBytes = new LongAdder();
+    private static final LongAdder captureOverruns = new LongAdder();
+    private static final LongAdder captureDroppedBytes = new LongAdder();
+    private static final LongAdder captureUnderruns = new LongAdder();
+    private static final LongAdder repaintRequests = new LongAdder();
+    private static final LongAdder paints = new LongAdder();
+    private static final LongAdder skippedRepaints = new LongAdder();
+
+    // Bytes returned by each TargetDataLine.read
+    private static final Histogram captureReadSize = new Histogram();
+    // Durations in nanoseconds, by name (sorted, for stable dumps)
+    private static final Map<String, Histogram> latencies = new ConcurrentSkipListMap<>();
+    private static final Map<Integer, Histogram> fftBySize = new ConcurrentHashMap<>();
+
+    private static final Metrics INSTANCE = new Metrics();
+    private static ScheduledExecutorService dumper;
+
+    private Metrics() {
+    }
+
+    public static void captureRead(int bytes) {
+        captureReads.increment();
+        captureBytes.add(bytes);
+        captureReadSize.record(bytes);
+    }
+
+    // A block the capture ring had no room for
+    public static void captureOverrun(int bytes) {
+        captureOverruns.increment();
+        captureDroppedBytes.add(bytes);
+    }
+
+    // The consumer found the capture ring empty while the source was still running
+    public static void captureUnderrun() {
+        captureUnderruns.increment();
+    }
+
+    // Duration of n-point transforms; callers keep the histogram for reuse
+    public static Histogram fft(int n) {
+        Histogram h = fftBySize.get(n);
+        if (h != null) return h;
+        return fftBySize.computeIfAbsent(n, size -> latency(String.format(Locale.ROOT, "fft.%08d", size)));
+    }
+
+    public static Histogram paint(String panel) {
+        return latency("paint." + panel);
+    }
+
+    public static Histogram latency(String name) {
+        return latencies.computeIfAbsent(name, k -> new Histogram());
+    }
+
+    public static void repaintRequested() {
+        repaintRequests.increment();
+    }
+
+    public static void painted() {
+        paints.increment();
+    }
+
+    public static void repaintSkipped() {
+        skippedRepaints.increment();
+    }
+
+    // Registers the MBean with the platform server; safe to call more than once
+    public static void registerMBean() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) server.registerMBean(INSTANCE, name);
+        } catch (JMException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // Writes every metric every periodSeconds, and once more on exit: to csv
+    // (appended) if given, otherwise to stdout. Runs on a daemon thread.
+    public static synchronized void startDump(long periodSeconds, File csv) throws IOException {
+        if (periodSeconds < 1)
+            throw new IllegalArgumentException("Dump period must be at least one second: " + periodSeconds);
+        if (dumper != null) throw new IllegalStateException("Metrics dump already running");
+
+        PrintWriter out;
+        if (csv != null) {
+            boolean fresh = !csv.exists() || csv.length() == 0;
+            out = new PrintWriter(new FileWriter(csv, true));
+            if (fresh) out.println("time_ms,metric,unit,count,mean,p50,p99,max");
+        } else {
+            out = new PrintWriter(System.out, true);
+        }
+        boolean asCsv = csv != null;
+
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        Runnable dump = () -> {
+            long now = System.currentTimeMillis();
+            List<String> lines = asCsv ? csvLines(now) : Arrays.asList(INSTANCE.getHistograms());
+            synchronized (out) {
+                for (String line : lines) {
+                    out.println(asCsv ? line : "[metrics] " + line);
+                }
+                if (!asCsv) out.println("[metrics] " + INSTANCE.counterSummary());
+                out.flush();
+            }
+        };
+        dumper.scheduleAtFixedRate(dump, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        // One last dump on exit, so short runs (batch mode) are recorded too
+        Runtime.getRuntime().addShutdownHook(new Thread(dump, "metrics-dump-exit"));
+    }
+
+    private static List<String> csvLines(long now) {
+        List<String> lines = new ArrayList<>();
+        String[][] counters = {
+                {"capture.reads", Long.toString(captureReads.sum())},
+                {"capture.bytes", Long.toString(captureBytes.sum())},
+                {"capture.overruns", Long.toString(captureOverruns.sum())},
+                {"capture.droppedBytes", Long.toString(captureDroppedBytes.sum())},
+                {"capture.underruns", Long.toString(captureUnderruns.sum())},
+                {"repaint.requests", Long.toString(repaintRequests.sum())},
+                {"repaint.paints", Long.toString(paints.sum())},
+                {"repaint.coalesced", Long.toString(INSTANCE.getCoalescedRepaints())},
+                {"repaint.skipped", Long.toString(skippedRepaints.sum())},
+        };
+        for (String[] c : counters) {
+            lines.add(now + "," + c[0] + ",count," + c[1] + ",,,,");
+        }
+        lines.add(csvLine(now, "capture.readSize", "bytes", captureReadSize, 1));
+        for (Map.Entry<String, Histogram> e : latencies.entrySet()) {
+            lines.add(csvLine(now, e.getKey(), "us", e.getValue(), 1000));
+        }
+        return lines;
+    }
+
+    private static String csvLine(long now, String name, String unit, Histogram h, double divisor) {
+        return String.format(Locale.ROOT, "%d,%s,%s,%d,%.1f,%.1f,%.1f,%.1f", now, name, unit, h.count(),
+                h.mean() / divisor, h.percentile(0.5) / divisor, h.percentile(0.99) / divisor, h.max() / divisor);
+    }
+
+    private static String summary(String name, String unit, Histogram h, double divisor) {
+        return String.format(Locale.ROOT, "%s count=%d mean=%.1f%s p50=%.1f%s p99=%.1f%s max=%.1f%s", name, h.count(),
+                h.mean() / divisor, unit, h.percentile(0.5) / divisor, unit,
+                h.percentile(0.99) / divisor, unit, h.max() / divisor, unit);
+    }
+
+    private String counterSummary() {
+        return String.format(Locale.ROOT,
+                "capture reads=%d bytes=%d overruns=%d dropped=%d underruns=%d; "
+                        + "repaints requested=%d painted=%d coalesced=%d skipped=%d",
+                getCaptureReads(), getCaptureBytes(), getCaptureOverruns(), getCaptureDroppedBytes(),
+                getCaptureUnderruns(),
+                getRepaintRequests(), getPaints(), getCoalescedRepaints(), getSkippedRepaints());
+    }
+
+    @Override
+    public long getCaptureReads() {
+        return captureReads.sum();
+    }
+
+    @Override
+    public long getCaptureBytes() {
+        return captureBytes.sum();
+    }
+
+    @Override
+    public long getCaptureOverruns() {
+        return captureOverruns.sum();
+    }
+
+    @Override
+    public long getCaptureDroppedBytes() {
+        return captureDroppedBytes.sum();
+    }
+
+    @Override
+    public long getCaptureUnderruns() {
+        return captureUnderruns.sum();
+    }
+
+    @Override
+    public long getRepaintRequests() {
+        return repaintRequests.sum();
+    }
+
+    @Override
+    public long getPaints() {
+        return paints.sum();
+    }
+
+    // Paints also happen without a request (exposure, resizing), so this is a
+    // lower bound
+    @Override
+    public long getCoalescedRepaints() {
+        return Math.max(0, repaintRequests.sum() - paints.sum());
+    }
+
+    @Override
+    public long getSkippedRepaints() {
+        return skippedRepaints.sum();
+    }
+
+    @Override
+    public String[] getHistograms() {
+        List<String> lines = new ArrayList<>();
+        lines.add(summary("capture.readSize", "B", captureReadSize, 1));
+        for (Map.Entry<String, Histogram> e : latencies.entrySet()) {
+            lines.add(summary(e.getKey(), "us", e.getValue(), 1000));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    @Override
+    public void reset() {
+        captureReads.reset();
+        captureBytes.reset();
+        captureOverruns.reset();
+        captureDroppedBytes.reset();
+        captureUnderruns.reset();
+        repaintRequests.reset();
+        paints.reset();
+        skippedRepaints.reset();
+        captureReadSize.reset();
+        for (Histogram h : latencies.values()) h.reset();
+    }
+}
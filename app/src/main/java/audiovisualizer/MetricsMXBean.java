@@ -0,0 +1,30 @@
+package audiovisualizer;
+
+// JMX view of Metrics, registered as audiovisualizer:type=Metrics
+public interface MetricsMXBean {
+    long getCaptureReads();
+
+    long getCaptureBytes();
+
+    long getCaptureOverruns();
+
+    long getCaptureDroppedBytes();
+
+    // Times the consumer caught up with a running source and had to wait
+    long getCaptureUnderruns();
+
+    long getRepaintRequests();
+
+    long getPaints();
+
+    // Repaint requests Swing merged into another paint
+    long getCoalescedRepaints();
+
+    // Timer ticks that found nothing new to show and did not repaint
+    long getSkippedRepaints();
+
+    // One line per histogram: name, count, mean, p50, p99 and max
+    String[] getHistograms();
+
+    void reset();
+}
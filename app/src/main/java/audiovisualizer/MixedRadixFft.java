@@ -0,0 +1,246 @@
+package audiovisualizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Stockham autosort FFT for any length, factored into radix 4, 2, 3 and 5 stages
+// with a generic O(p) butterfly for larger prime factors. Intended for sizes whose
+// prime factors are small; FftPlanner routes everything else through Bluestein.
+public final class MixedRadixFft implements ComplexFft {
+    private final int n;
+    private final int[] radices;
+    // exp(-2*pi*i*k/n) for k < n
+    private final double[] cos;
+    private final double[] sin;
+
+    public MixedRadixFft(int n) {
+        if (n <= 0)
+            throw new IllegalArgumentException("Length must be positive");
+        this.n = n;
+        this.radices = factor(n);
+
+        cos = new double[n];
+        sin = new double[n];
+        for (int k = 0; k < n; k++) {
+            double phase = -2 * Math.PI * k / n;
+            cos[k] = Math.cos(phase);
+            sin[k] = Math.sin(phase);
+        }
+    }
+
+    // Radix sequence used for n: fours first, then twos, threes, fives and
+    // whatever primes remain, in increasing order.
+    static int[] factor(int n) {
+        List<Integer> factors = new ArrayList<>();
+        int rest = n;
+        while (rest % 4 == 0) { factors.add(4); rest /= 4; }
+        while (rest % 2 == 0) { factors.add(2); rest /= 2; }
+        for (int p = 3; (long) p * p <= rest; p += 2) {
+            while (rest % p == 0) { factors.add(p); rest /= p; }
+        }
+        if (rest > 1) factors.add(rest);
+
+        int[] result = new int[factors.size()];
+        for (int i = 0; i < result.length; i++) result[i] = factors.get(i);
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return n;
+    }
+
+    @Override
+    public void transform(double[] real, double[] imag) {
+        if (real.length < n || imag.length < n)
+            throw new IllegalArgumentException("Arrays shorter than plan size " + n);
+        if (n == 1) return;
+
+        double[] xr = real, xi = imag;
+        double[] yr = new double[n], yi = new double[n];
+        boolean parallel = FftParallelism.useFor(n);
+
+        int s = 1;
+        int len = n;
+        for (int r : radices) {
+            int m = len / r;
+            // A stage is m * s independent butterflies of r points
+            if (parallel) {
+                double[] ar = xr, ai = xi, br = yr, bi = yi;
+                int radix = r, stride = s;
+                FftParallelism.forRange(0, m * s, FftParallelism.MIN_CHUNK / r,
+                        (from, to) -> stage(radix, m, stride, ar, ai, br, bi, from, to));
+            } else {
+                stage(r, m, s, xr, xi, yr, yi, 0, m * s);
+            }
+            double[] t = xr; xr = yr; yr = t;
+            t = xi; xi = yi; yi = t;
+            len = m;
+            s *= r;
+        }
+
+        if (xr != real) {
+            System.arraycopy(xr, 0, real, 0, n);
+            System.arraycopy(xi, 0, imag, 0, n);
+        }
+    }
+
+    // Each stage reads r interleaved sub-sequences of the current length r*m
+    // (stride s) and writes them, twiddled, into the autosorted layout of the next.
+    // Butterfly u = p * s + q combines inputs q + s * p + t * s * m; [from, to)
+    // selects a range of butterflies so a stage can be split across threads.
+    private void stage(int r, int m, int s, double[] xr, double[] xi, double[] yr, double[] yi,
+                       int from, int to) {
+        switch (r) {
+            case 2: radix2(m, s, xr, xi, yr, yi, from, to); break;
+            case 3: radix3(m, s, xr, xi, yr, yi, from, to); break;
+            case 4: radix4(m, s, xr, xi, yr, yi, from, to); break;
+            case 5: radix5(m, s, xr, xi, yr, yi, from, to); break;
+            default: radixGeneric(r, m, s, xr, xi, yr, yi, from, to); break;
+        }
+    }
+
+    private void radix2(int m, int s, double[] xr, double[] xi, double[] yr, double[] yi,
+                        int from, int to) {
+        for (int p = from / s, q0 = from % s; p < m && p * s < to; p++, q0 = 0) {
+            double w1r = cos[p * s], w1i = sin[p * s];
+            for (int q = q0, qEnd = Math.min(s, to - p * s); q < qEnd; q++) {
+                int a0 = q + s * p, a1 = a0 + s * m;
+                int out = q + s * 2 * p;
+                double br = xr[a0] - xr[a1], bi = xi[a0] - xi[a1];
+                yr[out] = xr[a0] + xr[a1];
+                yi[out] = xi[a0] + xi[a1];
+                yr[out + s] = br * w1r - bi * w1i;
+                yi[out + s] = br * w1i + bi * w1r;
+            }
+        }
+    }
+
+    private void radix3(int m, int s, double[] xr, double[] xi, double[] yr, double[] yi,
+                        int from, int to) {
+        final double c = Math.sqrt(3) / 2;
+        for (int p = from / s, q0 = from % s; p < m && p * s < to; p++, q0 = 0) {
+            int k1 = p * s, k2 = 2 * p * s;
+            double w1r = cos[k1], w1i = sin[k1];
+            double w2r = cos[k2], w2i = sin[k2];
+            for (int q = q0, qEnd = Math.min(s, to - p * s); q < qEnd; q++) {
+                int a0 = q + s * p, a1 = a0 + s * m, a2 = a1 + s * m;
+                int out = q + s * 3 * p;
+
+                double sr = xr[a1] + xr[a2], si = xi[a1] + xi[a2];
+                double dr = xr[a1] - xr[a2], di = xi[a1] - xi[a2];
+                double hr = xr[a0] - 0.5 * sr, hi = xi[a0] - 0.5 * si;
+
+                yr[out] = xr[a0] + sr;
+                yi[out] = xi[a0] + si;
+
+                double y1r = hr + c * di, y1i = hi - c * dr;
+                double y2r = hr - c * di, y2i = hi + c * dr;
+                yr[out + s] = y1r * w1r - y1i * w1i;
+                yi[out + s] = y1r * w1i + y1i * w1r;
+                yr[out + 2 * s] = y2r * w2r - y2i * w2i;
+                yi[out + 2 * s] = y2r * w2i + y2i * w2r;
+            }
+        }
+    }
+
+    private void radix4(int m, int s, double[] xr, double[] xi, double[] yr, double[] yi,
+                        int from, int to) {
+        for (int p = from / s, q0 = from % s; p < m && p * s < to; p++, q0 = 0) {
+            int k1 = p * s, k2 = 2 * p * s, k3 = 3 * p * s;
+            double w1r = cos[k1], w1i = sin[k1];
+            double w2r = cos[k2], w2i = sin[k2];
+            double w3r = cos[k3], w3i = sin[k3];
+            for (int q = q0, qEnd = Math.min(s, to - p * s); q < qEnd; q++) {
+                int a0 = q + s * p, a1 = a0 + s * m, a2 = a1 + s * m, a3 = a2 + s * m;
+                int out = q + s * 4 * p;
+
+                double t0r = xr[a0] + xr[a2], t0i = xi[a0] + xi[a2];
+                double t1r = xr[a0] - xr[a2], t1i = xi[a0] - xi[a2];
+                double t2r = xr[a1] + xr[a3], t2i = xi[a1] + xi[a3];
+                // (a1 - a3) * -i
+                double t3r = xi[a1] - xi[a3], t3i = xr[a3] - xr[a1];
+
+                yr[out] = t0r + t2r;
+                yi[out] = t0i + t2i;
+
+                double y1r = t1r + t3r, y1i = t1i + t3i;
+                double y2r = t0r - t2r, y2i = t0i - t2i;
+                double y3r = t1r - t3r, y3i = t1i - t3i;
+                yr[out + s] = y1r * w1r - y1i * w1i;
+                yi[out + s] = y1r * w1i + y1i * w1r;
+                yr[out + 2 * s] = y2r * w2r - y2i * w2i;
+                yi[out + 2 * s] = y2r * w2i + y2i * w2r;
+                yr[out + 3 * s] = y3r * w3r - y3i * w3i;
+                yi[out + 3 * s] = y3r * w3i + y3i * w3r;
+            }
+        }
+    }
+
+    private void radix5(int m, int s, double[] xr, double[] xi, double[] yr, double[] yi,
+                        int from, int to) {
+        final double c1 = Math.cos(2 * Math.PI / 5), c2 = Math.cos(4 * Math.PI / 5);
+        final double s1 = Math.sin(2 * Math.PI / 5), s2 = Math.sin(4 * Math.PI / 5);
+        for (int p = from / s, q0 = from % s; p < m && p * s < to; p++, q0 = 0) {
+            int out0 = s * 5 * p;
+            for (int q = q0, qEnd = Math.min(s, to - p * s); q < qEnd; q++) {
+                int a0 = q + s * p, a1 = a0 + s * m, a2 = a1 + s * m, a3 = a2 + s * m, a4 = a3 + s * m;
+                int out = q + out0;
+
+                double sum1r = xr[a1] + xr[a4], sum1i = xi[a1] + xi[a4];
+                double dif1r = xr[a1] - xr[a4], dif1i = xi[a1] - xi[a4];
+                double sum2r = xr[a2] + xr[a3], sum2i = xi[a2] + xi[a3];
+                double dif2r = xr[a2] - xr[a3], dif2i = xi[a2] - xi[a3];
+
+                yr[out] = xr[a0] + sum1r + sum2r;
+                yi[out] = xi[a0] + sum1i + sum2i;
+
+                double b1r = xr[a0] + c1 * sum1r + c2 * sum2r, b1i = xi[a0] + c1 * sum1i + c2 * sum2i;
+                double b2r = xr[a0] + c2 * sum1r + c1 * sum2r, b2i = xi[a0] + c2 * sum1i + c1 * sum2i;
+                double e1r = s1 * dif1r + s2 * dif2r, e1i = s1 * dif1i + s2 * dif2i;
+                double e2r = s2 * dif1r - s1 * dif2r, e2i = s2 * dif1i - s1 * dif2i;
+
+                // y1 = b1 - i*e1, y4 = b1 + i*e1, y2 = b2 - i*e2, y3 = b2 + i*e2
+                twiddle(yr, yi, out + s, b1r + e1i, b1i - e1r, p * s);
+                twiddle(yr, yi, out + 2 * s, b2r + e2i, b2i - e2r, 2 * p * s);
+                twiddle(yr, yi, out + 3 * s, b2r - e2i, b2i + e2r, 3 * p * s);
+                twiddle(yr, yi, out + 4 * s, b1r - e1i, b1i + e1r, 4 * p * s);
+            }
+        }
+    }
+
+    private void radixGeneric(int r, int m, int s, double[] xr, double[] xi, double[] yr, double[] yi,
+                              int from, int to) {
+        double[] tr = new double[r];
+        double[] ti = new double[r];
+        int unit = n / r;
+        for (int p = from / s, q0 = from % s; p < m && p * s < to; p++, q0 = 0) {
+            for (int q = q0, qEnd = Math.min(s, to - p * s); q < qEnd; q++) {
+                int a0 = q + s * p;
+                for (int t = 0; t < r; t++) {
+                    tr[t] = xr[a0 + t * s * m];
+                    ti[t] = xi[a0 + t * s * m];
+                }
+                int out = q + s * r * p;
+                for (int u = 0; u < r; u++) {
+                    double sumR = 0, sumI = 0;
+                    int k = 0;
+                    for (int t = 0; t < r; t++) {
+                        double wr = cos[k * unit], wi = sin[k * unit];
+                        sumR += tr[t] * wr - ti[t] * wi;
+                        sumI += tr[t] * wi + ti[t] * wr;
+                        k += u;
+                        if (k >= r) k -= r;
+                    }
+                    twiddle(yr, yi, out + u * s, sumR, sumI, u * p * s);
+                }
+            }
+        }
+    }
+
+    private void twiddle(double[] yr, double[] yi, int index, double re, double im, int k) {
+        double wr = cos[k], wi = sin[k];
+        yr[index] = re * wr - im * wi;
+        yi[index] = re * wi + im * wr;
+    }
+}
@@ -0,0 +1,110 @@
+package audiovisualizer;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock-free single-producer/single-consumer byte ring between the capture thread
+// and the thread that feeds the recorder and analyzers. Storage is allocated
+// once and neither side blocks: a write that does not fit is dropped whole (so
+// frames stay aligned) and counted as an overrun; a read that finds the ring
+// empty returns 0. The first such read after the consumer has caught up with a
+// producer that has not finished counts as an underrun; further polls while the
+// ring stays empty, and the wait for the first block, do not.
+public final class PcmRingBuffer {
+    private final byte[] data;
+    private final int mask;
+
+    // Free-running positions; only the consumer moves head, only the producer tail
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // Each counter is only written by one side
+    private volatile long overruns;
+    private volatile long droppedBytes;
+    private volatile long underruns;
+    // Producer: set once the last block has been written
+    private volatile boolean finished;
+    // Consumer: the ring has been found empty since the last read that returned data
+    private boolean drained = true;
+
+    public PcmRingBuffer(int capacity) {
+        if (capacity <= 0 || (capacity & (capacity - 1)) != 0)
+            throw new IllegalArgumentException("Capacity must be power of 2");
+        data = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    public int capacity() {
+        return data.length;
+    }
+
+    // Producer side. Returns false if the ring was too full and the block was dropped.
+    public boolean write(byte[] src, int offset, int length) {
+        long t = tail.get();
+        long h = head.get();
+        if (length > data.length - (t - h)) {
+            overruns++;
+            droppedBytes += length;
+            return false;
+        }
+
+        int pos = (int) (t & mask);
+        int first = Math.min(length, data.length - pos);
+        System.arraycopy(src, offset, data, pos, first);
+        System.arraycopy(src, offset + first, data, 0, length - first);
+        tail.lazySet(t + length);
+        return true;
+    }
+
+    // Producer side: no more writes will follow, so an empty ring from now on is
+    // the end of the stream rather than an underrun
+    public void finish() {
+        finished = true;
+    }
+
+    // Consumer side. Returns the number of bytes copied, 0 if the ring was empty.
+    public int read(byte[] dst, int offset, int length) {
+        long h = head.get();
+        long t = tail.get();
+        int count = (int) Math.min(length, t - h);
+        if (count <= 0) {
+            if (!drained && !finished) underruns++;
+            drained = true;
+            return 0;
+        }
+        drained = false;
+
+        int pos = (int) (h & mask);
+        int first = Math.min(count, data.length - pos);
+        System.arraycopy(data, pos, dst, offset, first);
+        System.arraycopy(data, 0, dst, offset + first, count - first);
+        head.lazySet(h + count);
+        return count;
+    }
+
+    public int available() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public long overruns() {
+        return overruns;
+    }
+
+    public long droppedBytes() {
+        return droppedBytes;
+    }
+
+    public long underruns() {
+        return underruns;
+    }
+
+    // Only while neither side is running
+    public void clear() {
+        head.set(0);
+        tail.set(0);
+        overruns = 0;
+        droppedBytes = 0;
+        underruns = 0;
+        finished = false;
+        drained = true;
+    }
+}
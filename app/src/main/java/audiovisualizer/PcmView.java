@@ -0,0 +1,233 @@
+package audiovisualizer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.security.MessageDigest;
+
+// Zero-copy view of interleaved PCM frames stored in one or more ByteBuffers,
+// e.g. memory-mapped regions of a WAV file. Samples are decoded on access
+// according to the format: 8/16/24/32-bit integer (signed or unsigned) or
+// 32/64-bit float, either endianness, any number of channels.
+public final class PcmView implements SampleReader {
+    // Signed 16-bit runs are copied out in bulk this many samples at a time
+    // (all channels of the frames, for interleaved audio) and converted by the
+    // active Kernels
+    private static final int SHORT_BLOCK = 4096;
+    private static final ThreadLocal<short[]> SHORT_SCRATCH = ThreadLocal.withInitial(() -> new short[SHORT_BLOCK]);
+
+    private final AudioFormat format;
+    // Every segment holds whole frames; all but the last are segmentBytes long
+    private final ByteBuffer[] segments;
+    private final long segmentBytes;
+    private final long frames;
+
+    private final int channels;
+    private final int frameSize;
+    private final int bytesPerSample;
+    private final boolean bigEndian;
+    private final boolean unsigned;
+    private final boolean floating;
+    private final double scale;
+    private final ByteOrder order;
+
+    private PcmView(AudioFormat format, ByteBuffer[] segments, long segmentBytes) {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        if (!AudioFormat.Encoding.PCM_SIGNED.equals(encoding)
+                && !AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)
+                && !AudioFormat.Encoding.PCM_FLOAT.equals(encoding))
+            throw new IllegalArgumentException("Unsupported encoding: " + encoding);
+
+        int bits = format.getSampleSizeInBits();
+        this.floating = AudioFormat.Encoding.PCM_FLOAT.equals(encoding);
+        if (floating ? bits != 32 && bits != 64 : bits != 8 && bits != 16 && bits != 24 && bits != 32)
+            throw new IllegalArgumentException("Unsupported sample size: " + bits + " bits");
+
+        this.format = format;
+        this.bigEndian = format.isBigEndian();
+        this.order = bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        // Lets 16/32-bit and float samples be read with a single get
+        for (ByteBuffer segment : segments) {
+            segment.order(order);
+        }
+        this.segments = segments;
+        this.segmentBytes = segmentBytes;
+        this.channels = format.getChannels();
+        this.bytesPerSample = bits / 8;
+        this.frameSize = channels * bytesPerSample;
+        this.unsigned = AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding);
+        this.scale = floating ? 1 : 1.0 / (1L << (bits - 1));
+
+        long bytes = 0;
+        for (ByteBuffer segment : segments) bytes += segment.remaining() / frameSize * frameSize;
+        this.frames = bytes / frameSize;
+    }
+
+    // Views an in-memory array; the array is referenced, not copied
+    public static PcmView wrap(byte[] data, AudioFormat format) {
+        return new PcmView(format, new ByteBuffer[] { ByteBuffer.wrap(data) }, data.length);
+    }
+
+    // Views buffers whose positions mark the start of the data. All buffers but
+    // the last must have exactly segmentBytes remaining, a multiple of the frame size.
+    public static PcmView of(ByteBuffer[] segments, long segmentBytes, AudioFormat format) {
+        ByteBuffer[] copies = new ByteBuffer[segments.length];
+        for (int i = 0; i < segments.length; i++) copies[i] = segments[i].slice();
+        return new PcmView(format, copies, segmentBytes);
+    }
+
+    @Override
+    public AudioFormat format() {
+        return format;
+    }
+
+    @Override
+    public long frames() {
+        return frames;
+    }
+
+    @Override
+    public int channels() {
+        return channels;
+    }
+
+    public long byteLength() {
+        return frames * frameSize;
+    }
+
+    // Sample of one channel, scaled to [-1, 1)
+    @Override
+    public float sample(long frame, int channel) {
+        long offset = frame * frameSize + (long) channel * bytesPerSample;
+        ByteBuffer segment = segments[(int) (offset / segmentBytes)];
+        return decode(segment, (int) (offset % segmentBytes));
+    }
+
+    // Reads length consecutive samples of one channel starting at frame,
+    // looking up the segment once per run of samples in it
+    @Override
+    public void read(long frame, int channel, float[] dst, int offset, int length) {
+        long pos = frame * frameSize + (long) channel * bytesPerSample;
+        int done = 0;
+        while (done < length) {
+            ByteBuffer segment = segments[(int) (pos / segmentBytes)];
+            int p = (int) (pos % segmentBytes);
+            int framesLeft = (int) ((segmentBytes - p + (long) channel * bytesPerSample) / frameSize);
+            int run = Math.min(length - done, framesLeft);
+            // Checked by sample size: frameSize == 2 would also match 8-bit stereo
+            if (bytesPerSample == 2 && !unsigned && !floating) {
+                readShorts(segment, p, dst, offset + done, run);
+                done += run;
+                pos += (long) run * frameSize;
+                continue;
+            }
+            for (int end = offset + done + run, i = offset + done; i < end; i++, p += frameSize) {
+                dst[i] = decode(segment, p);
+            }
+            done += run;
+            pos += (long) run * frameSize;
+        }
+    }
+
+    // Signed 16-bit, any channel count: a bulk copy (byte-swapped as needed)
+    // starting at the channel's first sample, then a strided conversion the
+    // kernels can vectorize, instead of one getShort per sample
+    private void readShorts(ByteBuffer segment, int pos, float[] dst, int offset, int length) {
+        ByteBuffer bytes = segment.duplicate().order(order);
+        bytes.position(pos);
+        ShortBuffer samples = bytes.asShortBuffer();
+        short[] scratch = SHORT_SCRATCH.get();
+        // Frames per batch; the batch ends on the channel's sample of its last frame
+        int batch = (scratch.length - 1) / channels + 1;
+        Kernels kernels = Kernels.active();
+        for (int done = 0; done < length; ) {
+            int count = Math.min(batch, length - done);
+            samples.get(scratch, 0, (count - 1) * channels + 1);
+            kernels.shortsToFloats(scratch, 0, channels, dst, offset + done, count);
+            done += count;
+            if (done < length) samples.position(samples.position() + channels - 1);
+        }
+    }
+
+    private float decode(ByteBuffer b, int pos) {
+        if (floating) {
+            return bytesPerSample == 4 ? b.getFloat(pos) : (float) b.getDouble(pos);
+        }
+        long value;
+        switch (bytesPerSample) {
+            case 1: value = unsigned ? (b.get(pos) & 0xFF) - 0x80 : b.get(pos); break;
+            case 2: value = unsigned ? (b.getShort(pos) & 0xFFFF) - 0x8000 : b.getShort(pos); break;
+            case 4: value = unsigned ? (b.getInt(pos) & 0xFFFFFFFFL) - 0x80000000L : b.getInt(pos); break;
+            default: {
+                long raw = bits(b, pos, bytesPerSample);
+                if (unsigned) {
+                    value = raw - (1L << (bytesPerSample * 8 - 1));
+                } else {
+                    int shift = 64 - bytesPerSample * 8;
+                    value = (raw << shift) >> shift;
+                }
+            }
+        }
+        return (float) (value * scale);
+    }
+
+    // Unsigned little/big-endian integer of count bytes at pos
+    private long bits(ByteBuffer b, int pos, int count) {
+        long v = 0;
+        if (bigEndian) {
+            for (int i = 0; i < count; i++) v = (v << 8) | (b.get(pos + i) & 0xFF);
+        } else {
+            for (int i = count - 1; i >= 0; i--) v = (v << 8) | (b.get(pos + i) & 0xFF);
+        }
+        return v;
+    }
+
+    // Feeds the raw frame bytes to a digest, e.g. to recognise the same audio again
+    public void digest(MessageDigest digest) {
+        long left = byteLength();
+        for (ByteBuffer segment : segments) {
+            if (left == 0) break;
+            ByteBuffer data = segment.duplicate();
+            data.limit((int) Math.min(data.limit(), left));
+            left -= data.remaining();
+            digest.update(data);
+        }
+    }
+
+    // Raw frame bytes in order, e.g. for writing the view back out as a WAV file
+    public InputStream openStream() {
+        return new InputStream() {
+            private int index;
+            private ByteBuffer current = next();
+            private long left = byteLength();
+
+            private ByteBuffer next() {
+                return index < segments.length ? segments[index++].duplicate() : null;
+            }
+
+            @Override
+            public int read() {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) == 1 ? one[0] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] dst, int off, int len) {
+                if (len == 0) return 0;
+                while (current != null && !current.hasRemaining()) current = next();
+                if (current == null || left == 0) return -1;
+                int count = (int) Math.min(Math.min(len, current.remaining()), left);
+                current.get(dst, off, count);
+                left -= count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, left);
+            }
+        };
+    }
+}
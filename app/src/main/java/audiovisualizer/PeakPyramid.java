@@ -0,0 +1,149 @@
+package audiovisualizer;
+
+// Multi-resolution min/max summary of one channel, like a mipmap: level k stores
+// the minimum and maximum of each block of baseBlock << k samples. Any sample
+// range can then be summarised with a handful of lookups, so drawing a waveform
+// costs O(pixels) regardless of the clip length.
+public final class PeakPyramid {
+    public static final int MIN_BASE_BLOCK = 16;
+    // Long clips get bigger base blocks so level 0 stays around this many entries
+    private static final long MAX_BASE_BLOCKS = 1 << 20;
+
+    private final SampleReader audio;
+    private final int channel;
+    private final long samples;
+    private final int baseBlock;
+    private final short[][] mins;
+    private final short[][] maxs;
+
+    private PeakPyramid(SampleReader audio, int channel, int baseBlock, short[][] mins, short[][] maxs) {
+        this.audio = audio;
+        this.channel = channel;
+        this.samples = audio.frames();
+        this.baseBlock = baseBlock;
+        this.mins = mins;
+        this.maxs = maxs;
+    }
+
+    // Summarises one channel; samples are read through the reader, not copied
+    public static PeakPyramid build(SampleReader audio, int channel) {
+        long samples = audio.frames();
+        int baseBlock = MIN_BASE_BLOCK;
+        while (samples / baseBlock > MAX_BASE_BLOCKS) baseBlock *= 2;
+
+        int levels = 0;
+        for (long blocks = samples / baseBlock; blocks >= 1; blocks /= 2) levels++;
+        short[][] mins = new short[levels][];
+        short[][] maxs = new short[levels][];
+        if (levels == 0) return new PeakPyramid(audio, channel, baseBlock, mins, maxs);
+
+        int blocks = (int) (samples / baseBlock);
+        short[] min = new short[blocks];
+        short[] max = new short[blocks];
+        float[] block = new float[baseBlock];
+        for (int b = 0; b < blocks; b++) {
+            audio.read((long) b * baseBlock, channel, block, 0, baseBlock);
+            float lo = Float.MAX_VALUE, hi = -Float.MAX_VALUE;
+            for (float v : block) {
+                if (v < lo) lo = v;
+                if (v > hi) hi = v;
+            }
+            min[b] = toShort(lo);
+            max[b] = toShort(hi);
+        }
+        mins[0] = min;
+        maxs[0] = max;
+
+        for (int k = 1; k < levels; k++) {
+            short[] prevMin = mins[k - 1], prevMax = maxs[k - 1];
+            blocks = prevMin.length / 2;
+            min = new short[blocks];
+            max = new short[blocks];
+            for (int b = 0; b < blocks; b++) {
+                min[b] = (short) Math.min(prevMin[2 * b], prevMin[2 * b + 1]);
+                max[b] = (short) Math.max(prevMax[2 * b], prevMax[2 * b + 1]);
+            }
+            mins[k] = min;
+            maxs[k] = max;
+        }
+        return new PeakPyramid(audio, channel, baseBlock, mins, maxs);
+    }
+
+    // Reattaches levels built earlier for the same audio (see AnalysisCache)
+    static PeakPyramid restore(SampleReader audio, int channel, int baseBlock, short[][] mins, short[][] maxs) {
+        long blocks = audio.frames() / baseBlock;
+        if (mins.length != maxs.length || (blocks > 0) != (mins.length > 0)
+                || (mins.length > 0 && (mins[0].length != blocks || maxs[0].length != blocks)))
+            throw new IllegalArgumentException("Peak levels do not match the audio length");
+        return new PeakPyramid(audio, channel, baseBlock, mins, maxs);
+    }
+
+    // Levels are shared, not copied
+    int baseBlock() {
+        return baseBlock;
+    }
+
+    short[][] mins() {
+        return mins;
+    }
+
+    short[][] maxs() {
+        return maxs;
+    }
+
+    public long samples() {
+        return samples;
+    }
+
+    // Sample scaled to the 16-bit range
+    public short sample(long index) {
+        return toShort(audio.sample(index, channel));
+    }
+
+    private static short toShort(float sample) {
+        float v = sample * 32768f;
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, v));
+    }
+
+    // Minimum and maximum sample in [from, to), written to out[0] and out[1].
+    // Uses the largest aligned blocks that fit, so only unaligned edges are
+    // read sample by sample.
+    public void range(long from, long to, short[] out) {
+        from = Math.max(0, from);
+        to = Math.min(samples, to);
+        short lo = Short.MAX_VALUE, hi = Short.MIN_VALUE;
+
+        long s = from;
+        while (s < to) {
+            // Largest complete, aligned block that starts at s and fits the range
+            int level = -1, block = 0;
+            long size = 0;
+            if (s % baseBlock == 0) {
+                long b = s / baseBlock;
+                long sz = baseBlock;
+                for (int k = 0; k < mins.length && b < mins[k].length && s + sz <= to; k++) {
+                    level = k;
+                    block = (int) b;
+                    size = sz;
+                    if ((b & 1) != 0) break;
+                    b >>= 1;
+                    sz <<= 1;
+                }
+            }
+
+            if (level >= 0) {
+                if (mins[level][block] < lo) lo = mins[level][block];
+                if (maxs[level][block] > hi) hi = maxs[level][block];
+                s += size;
+            } else {
+                short v = sample(s++);
+                if (v < lo) lo = v;
+                if (v > hi) hi = v;
+            }
+        }
+
+        if (lo > hi) lo = hi = 0;
+        out[0] = lo;
+        out[1] = hi;
+    }
+}
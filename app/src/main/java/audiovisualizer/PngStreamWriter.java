@@ -0,0 +1,128 @@
+package audiovisualizer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Writes an 8-bit RGB PNG row by row, so an image of any size can be encoded
+// while holding only a band of rows in memory. Rows use the "Up" filter: plot
+// backgrounds repeat from row to row and filter to zeros, which deflate
+// compresses well even when a row is wider than its 32 KB window.
+public final class PngStreamWriter {
+    private static final byte[] SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n' };
+    private static final int IDAT_SIZE = 1 << 16;
+    private static final byte FILTER_UP = 2;
+
+    private final OutputStream out;
+    private final int width;
+    private final int height;
+    private final DeflaterOutputStream idat;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    private final byte[] row;
+    private final byte[] previous;
+    private int rowsWritten;
+
+    public PngStreamWriter(OutputStream out, int width, int height) throws IOException {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Image size must be positive: " + width + "x" + height);
+        if ((long) width * 3 + 1 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Image too wide: " + width);
+        this.out = out;
+        this.width = width;
+        this.height = height;
+        row = new byte[1 + width * 3];
+        previous = new byte[row.length];
+
+        out.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8; // bits per channel
+        header[9] = 2; // truecolour RGB
+        // compression, filter method and interlace stay 0
+        writeChunk("IHDR", header, 0, header.length);
+
+        idat = new DeflaterOutputStream(new IdatStream(), deflater, IDAT_SIZE);
+    }
+
+    public int rowsWritten() {
+        return rowsWritten;
+    }
+
+    // Appends rows of 0xRRGGBB pixels; pixels[offset + r * scanline + x] is
+    // pixel x of the r-th row written by this call
+    public void writeRows(int[] pixels, int offset, int scanline, int rows) throws IOException {
+        if (rowsWritten + rows > height)
+            throw new IllegalStateException("Image has only " + height + " rows");
+        for (int r = 0; r < rows; r++) {
+            int src = offset + r * scanline;
+            row[0] = FILTER_UP;
+            for (int x = 0, b = 1; x < width; x++, b += 3) {
+                int p = pixels[src + x];
+                row[b] = (byte) ((p >> 16) - previous[b]);
+                row[b + 1] = (byte) ((p >> 8) - previous[b + 1]);
+                row[b + 2] = (byte) (p - previous[b + 2]);
+                // Keep the unfiltered bytes for the next row
+                previous[b] = (byte) (p >> 16);
+                previous[b + 1] = (byte) (p >> 8);
+                previous[b + 2] = (byte) p;
+            }
+            idat.write(row);
+            rowsWritten++;
+        }
+    }
+
+    // Writes the last image data and IEND; does not close the stream
+    public void finish() throws IOException {
+        if (rowsWritten != height)
+            throw new IllegalStateException("Only " + rowsWritten + " of " + height + " rows written");
+        idat.finish();
+        deflater.end();
+        writeChunk("IEND", new byte[0], 0, 0);
+        out.flush();
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] prefix = new byte[8];
+        putInt(prefix, 0, length);
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(typeBytes, 0, prefix, 4, 4);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, offset, length);
+        byte[] suffix = new byte[4];
+        putInt(suffix, 0, (int) crc.getValue());
+
+        out.write(prefix);
+        out.write(data, offset, length);
+        out.write(suffix);
+    }
+
+    private static void putInt(byte[] dst, int offset, int value) {
+        dst[offset] = (byte) (value >>> 24);
+        dst[offset + 1] = (byte) (value >>> 16);
+        dst[offset + 2] = (byte) (value >>> 8);
+        dst[offset + 3] = (byte) value;
+    }
+
+    // Compressed data, cut into IDAT chunks as it arrives
+    private final class IdatStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, IDAT_SIZE);
+                writeChunk("IDAT", b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+    }
+}
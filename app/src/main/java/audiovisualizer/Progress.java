@@ -0,0 +1,9 @@
+package audiovisualizer;
+
+import java.io.InterruptedIOException;
+
+// Progress of a long save or export. update throws InterruptedIOException once
+// the user has cancelled, which unwinds the operation like any other I/O error.
+public interface Progress {
+    void update(double fraction) throws InterruptedIOException;
+}
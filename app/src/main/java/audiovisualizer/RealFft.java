@@ -0,0 +1,48 @@
+package audiovisualizer;
+
+// Forward transform of an even number of real samples of any length. The samples
+// are packed pairwise into an n/2-point complex transform from FftPlanner and the
+// result is split into bins 0..n/2, the same way FftPlan does for powers of two.
+public final class RealFft {
+    private final int n;
+    private final ComplexFft half;
+    // exp(-2*pi*i*k/n) for k <= n/4
+    private final double[] cos;
+    private final double[] sin;
+
+    RealFft(int n, ComplexFft half) {
+        if (n < 2 || (n & 1) != 0)
+            throw new IllegalArgumentException("Real transform length must be even: " + n);
+        this.n = n;
+        this.half = half;
+
+        int m = n / 2;
+        cos = new double[m / 2 + 1];
+        sin = new double[m / 2 + 1];
+        for (int k = 0; k <= m / 2; k++) {
+            double phase = -2 * Math.PI * k / n;
+            cos[k] = Math.cos(phase);
+            sin[k] = Math.sin(phase);
+        }
+    }
+
+    public int size() {
+        return n;
+    }
+
+    // Number of bins produced, and the length the real/imag arrays must have
+    public int bins() {
+        return n / 2 + 1;
+    }
+
+    // Expects real[k] = x[2k], imag[k] = x[2k+1] for k < n/2 and leaves bins
+    // 0..n/2 of the spectrum in place.
+    public void realForwardPacked(double[] real, double[] imag) {
+        int m = n / 2;
+        if (real.length < m + 1 || imag.length < m + 1)
+            throw new IllegalArgumentException("Output arrays need " + (m + 1) + " bins");
+
+        half.transform(real, imag);
+        FftPlan.splitRealSpectrum(real, imag, m, cos, sin);
+    }
+}
@@ -0,0 +1,73 @@
+package audiovisualizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.sound.sampled.AudioFormat;
+
+// Plays a clip back as if it were being recorded, at speed times real time
+// (0 for as fast as the pipeline takes it), optionally looping
+public final class ReplaySource implements AudioSource {
+    private final PcmView audio;
+    private final double speed;
+    private final boolean loop;
+    private final int frameSize;
+    private SourcePacer pacer;
+    private InputStream in;
+    private long framesRead;
+
+    public ReplaySource(PcmView audio, double speed, boolean loop) {
+        if (audio.frames() == 0 && loop)
+            throw new IllegalArgumentException("Cannot loop an empty clip");
+        this.audio = audio;
+        this.speed = speed;
+        this.loop = loop;
+        this.frameSize = audio.format().getFrameSize();
+    }
+
+    @Override
+    public AudioFormat format() {
+        return audio.format();
+    }
+
+    @Override
+    public void open() {
+        pacer = new SourcePacer(audio.format().getFrameRate(), speed);
+        in = audio.openStream();
+        framesRead = 0;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int wanted = length / frameSize * frameSize;
+        int count = 0;
+        // The stream can split a frame where two mapped segments meet
+        while (count < wanted) {
+            int n = in.read(buffer, offset + count, wanted - count);
+            if (n < 0) {
+                if (!loop || count % frameSize != 0) break;
+                in = audio.openStream();
+                continue;
+            }
+            count += n;
+        }
+        if (count == 0) return -1;
+        framesRead += count / frameSize;
+        pacer.pace(framesRead);
+        return count;
+    }
+
+    @Override
+    public boolean realTime() {
+        return pacer == null || pacer.throttled();
+    }
+
+    @Override
+    public String describe() {
+        return "replay";
+    }
+
+    @Override
+    public void close() {
+        in = null;
+    }
+}
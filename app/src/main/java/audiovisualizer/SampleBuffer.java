@@ -0,0 +1,148 @@
+package audiovisualizer;
+
+import javax.sound.sampled.AudioFormat;
+
+// Audio decoded once into primitive arrays, so panels and analyzers read plain
+// arrays instead of decoding bytes on every pass. Each channel is stored
+// separately in chunks of CHUNK_FRAMES samples, which keeps any single array
+// small and lets clips grow past the Java array limit. Sources of 16 bits or
+// less are stored exactly as short, half the memory of float; wider integer and
+// floating-point sources are stored as float.
+public final class SampleBuffer implements SampleReader {
+    private static final int CHUNK_SHIFT = 16;
+    public static final int CHUNK_FRAMES = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_FRAMES - 1;
+    private static final float SHORT_SCALE = 1f / 32768;
+
+    private final AudioFormat format;
+    private final long frames;
+    private final int channels;
+    // [channel][chunk][sample]; exactly one of the two is used
+    private final short[][][] shorts;
+    private final float[][][] floats;
+
+    private SampleBuffer(AudioFormat format, long frames, short[][][] shorts, float[][][] floats) {
+        this.format = format;
+        this.frames = frames;
+        this.channels = format.getChannels();
+        this.shorts = shorts;
+        this.floats = floats;
+    }
+
+    // Decodes every channel of the source
+    public static SampleBuffer decode(SampleReader source) {
+        AudioFormat format = source.format();
+        long frames = source.frames();
+        int channels = source.channels();
+        int chunks = (int) ((frames + CHUNK_FRAMES - 1) >> CHUNK_SHIFT);
+        boolean compact = compact(format);
+
+        short[][][] shorts = compact ? new short[channels][chunks][] : null;
+        float[][][] floats = compact ? null : new float[channels][chunks][];
+        float[] block = compact ? new float[CHUNK_FRAMES] : null;
+
+        for (int c = 0; c < chunks; c++) {
+            long start = (long) c << CHUNK_SHIFT;
+            int count = (int) Math.min(CHUNK_FRAMES, frames - start);
+            for (int ch = 0; ch < channels; ch++) {
+                if (compact) {
+                    source.read(start, ch, block, 0, count);
+                    // Exact: 8- and 16-bit samples are multiples of 1/32768
+                    short[] chunk = new short[count];
+                    for (int i = 0; i < count; i++) chunk[i] = (short) (block[i] * 32768f);
+                    shorts[ch][c] = chunk;
+                } else {
+                    float[] chunk = new float[count];
+                    source.read(start, ch, chunk, 0, count);
+                    floats[ch][c] = chunk;
+                }
+            }
+        }
+        return new SampleBuffer(format, frames, shorts, floats);
+    }
+
+    // Heap the decoded samples of a clip would take, to decide whether decoding it pays
+    public static long decodedBytes(AudioFormat format, long frames) {
+        return frames * format.getChannels() * (compact(format) ? 2 : 4);
+    }
+
+    private static boolean compact(AudioFormat format) {
+        return !AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding()) && format.getSampleSizeInBits() <= 16;
+    }
+
+    @Override
+    public AudioFormat format() {
+        return format;
+    }
+
+    @Override
+    public long frames() {
+        return frames;
+    }
+
+    @Override
+    public int channels() {
+        return channels;
+    }
+
+    @Override
+    public float sample(long frame, int channel) {
+        int chunk = (int) (frame >> CHUNK_SHIFT);
+        int index = (int) frame & CHUNK_MASK;
+        if (shorts != null) return shorts[channel][chunk][index] * SHORT_SCALE;
+        return floats[channel][chunk][index];
+    }
+
+    @Override
+    public void read(long frame, int channel, float[] dst, int offset, int length) {
+        int done = 0;
+        while (done < length) {
+            long pos = frame + done;
+            int chunk = (int) (pos >> CHUNK_SHIFT);
+            int index = (int) pos & CHUNK_MASK;
+            int run = Math.min(length - done, CHUNK_FRAMES - index);
+            if (shorts != null) {
+                short[] src = shorts[channel][chunk];
+                for (int i = 0; i < run; i++) dst[offset + done + i] = src[index + i] * SHORT_SCALE;
+            } else {
+                System.arraycopy(floats[channel][chunk], index, dst, offset + done, run);
+            }
+            done += run;
+        }
+    }
+
+    // One channel as a mono reader sharing this buffer's arrays
+    public SampleReader channel(int channel) {
+        if (channel < 0 || channel >= channels)
+            throw new IllegalArgumentException("No channel " + channel + " in " + channels + "-channel audio");
+        AudioFormat mono = new AudioFormat(format.getEncoding(), format.getSampleRate(),
+                format.getSampleSizeInBits(), 1, format.getFrameSize() / channels,
+                format.getFrameRate(), format.isBigEndian());
+        return new SampleReader() {
+            @Override
+            public AudioFormat format() {
+                return mono;
+            }
+
+            @Override
+            public long frames() {
+                return frames;
+            }
+
+            @Override
+            public int channels() {
+                return 1;
+            }
+
+            @Override
+            public float sample(long frame, int ch) {
+                return SampleBuffer.this.sample(frame, channel);
+            }
+
+            @Override
+            public void read(long frame, int ch, float[] dst, int offset, int length) {
+                SampleBuffer.this.read(frame, channel, dst, offset, length);
+            }
+        };
+    }
+}
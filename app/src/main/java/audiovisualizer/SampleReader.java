@@ -0,0 +1,22 @@
+package audiovisualizer;
+
+import javax.sound.sampled.AudioFormat;
+
+// Random access to decoded samples, scaled to [-1, 1). PcmView decodes on every
+// access and holds nothing in memory; SampleBuffer decodes once into primitive
+// arrays that can be read repeatedly, at a heap cost proportional to the clip.
+// The UI shows a clip through its PcmView at once and switches to a SampleBuffer
+// decoded in the background when the clip fits in a share of the heap.
+public interface SampleReader {
+    AudioFormat format();
+
+    long frames();
+
+    int channels();
+
+    // Sample of one channel
+    float sample(long frame, int channel);
+
+    // Reads length consecutive samples of one channel starting at frame
+    void read(long frame, int channel, float[] dst, int offset, int length);
+}
@@ -0,0 +1,150 @@
+package audiovisualizer;
+
+// Live waveform history for the oscilloscope view. Incoming samples are
+// reduced to one min/max pair per column of samplesPerColumn samples, so every
+// sample counts towards what is drawn, and the newest capacity columns are
+// kept. With the trigger on, it also captures sweeps of sweepSamples samples
+// that start where the signal rises through the trigger level, which keeps a
+// periodic signal still on screen; if no edge comes for AUTO_SAMPLES samples a
+// sweep starts anyway, so silence or a flat signal still shows. Written by the
+// capture consumer thread and read by the Swing thread.
+public final class ScopeBuffer {
+    // About 0.37 s at 44.1 kHz
+    private static final int AUTO_SAMPLES = 16384;
+    // The signal must drop this far below the level before the next edge counts
+    private static final float TRIGGER_HYSTERESIS = 0.01f;
+
+    private final float[] mins;
+    private final float[] maxs;
+    private final int samplesPerColumn;
+    private long columns;
+    private float columnMin = Float.POSITIVE_INFINITY;
+    private float columnMax = Float.NEGATIVE_INFINITY;
+    private int columnFill;
+
+    private final float[] sweep;
+    private final float[] lastSweep;
+    private boolean triggerEnabled;
+    private float triggerLevel;
+    private boolean armed;
+    private int sweepPos = -1;
+    private int sinceSweep;
+    private long sweeps;
+    private long generation;
+
+    public ScopeBuffer(int capacity, int samplesPerColumn, int sweepSamples) {
+        if (capacity < 1 || samplesPerColumn < 1 || sweepSamples < 1)
+            throw new IllegalArgumentException("Capacity, samples per column and sweep length must be positive");
+        this.mins = new float[capacity];
+        this.maxs = new float[capacity];
+        this.samplesPerColumn = samplesPerColumn;
+        this.sweep = new float[sweepSamples];
+        this.lastSweep = new float[sweepSamples];
+    }
+
+    public int capacity() {
+        return mins.length;
+    }
+
+    public int sweepSamples() {
+        return sweep.length;
+    }
+
+    public synchronized void setTrigger(boolean enabled, float level) {
+        triggerEnabled = enabled;
+        triggerLevel = level;
+        armed = false;
+        sweepPos = -1;
+        sinceSweep = 0;
+    }
+
+    public synchronized boolean triggerEnabled() {
+        return triggerEnabled;
+    }
+
+    public synchronized void append(float[] samples, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float v = samples[i];
+            if (v < columnMin) columnMin = v;
+            if (v > columnMax) columnMax = v;
+            if (++columnFill == samplesPerColumn) {
+                int slot = (int) (columns % mins.length);
+                mins[slot] = columnMin;
+                maxs[slot] = columnMax;
+                columns++;
+                columnMin = Float.POSITIVE_INFINITY;
+                columnMax = Float.NEGATIVE_INFINITY;
+                columnFill = 0;
+            }
+            if (triggerEnabled) trigger(v);
+        }
+    }
+
+    private void trigger(float v) {
+        if (sweepPos < 0) {
+            sinceSweep++;
+            if (v < triggerLevel - TRIGGER_HYSTERESIS) {
+                armed = true;
+                return;
+            }
+            if (!(armed && v >= triggerLevel) && sinceSweep < AUTO_SAMPLES) return;
+            sweepPos = 0;
+        }
+        sweep[sweepPos++] = v;
+        if (sweepPos == sweep.length) {
+            System.arraycopy(sweep, 0, lastSweep, 0, sweep.length);
+            sweeps++;
+            sweepPos = -1;
+            armed = false;
+            sinceSweep = 0;
+        }
+    }
+
+    // Completed columns since the last clear, including overwritten ones
+    public synchronized long columnsWritten() {
+        return columns;
+    }
+
+    // Copies column columnIndex as {min, max} into dst; false if it has been
+    // overwritten or not completed yet
+    public synchronized boolean copyColumn(long columnIndex, float[] dst) {
+        if (columnIndex < 0 || columnIndex >= columns || columnIndex < columns - mins.length) return false;
+        int slot = (int) (columnIndex % mins.length);
+        dst[0] = mins[slot];
+        dst[1] = maxs[slot];
+        return true;
+    }
+
+    // Completed sweeps since the last clear
+    public synchronized long sweepsCompleted() {
+        return sweeps;
+    }
+
+    // Copies the latest completed sweep; returns its number, 0 if there is none yet
+    public synchronized long copySweep(float[] dst) {
+        System.arraycopy(lastSweep, 0, dst, 0, lastSweep.length);
+        return sweeps;
+    }
+
+    // Changes whenever there is something new to draw
+    public synchronized long updates() {
+        return columns + sweeps;
+    }
+
+    // Changes on every clear, so a reader knows to redraw everything
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized void clear() {
+        generation++;
+        columns = 0;
+        columnMin = Float.POSITIVE_INFINITY;
+        columnMax = Float.NEGATIVE_INFINITY;
+        columnFill = 0;
+        sweeps = 0;
+        sweepPos = -1;
+        armed = false;
+        sinceSweep = 0;
+    }
+}
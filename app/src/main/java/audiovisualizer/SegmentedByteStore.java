@@ -0,0 +1,150 @@
+package audiovisualizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sound.sampled.AudioFormat;
+
+// Append-only PCM storage made of fixed-size direct (off-heap) segments.
+// Growing never copies the data already stored, the total is not limited to
+// 2 GB, and the heap only holds the segment list, so long sessions add nothing
+// for the garbage collector to trace or move. view() exposes the contents as a
+// PcmView without copying.
+//
+// The memory is freed as soon as close() has been called once by the owner and
+// once for every retain(); until then views stay valid. Stores that are never
+// closed are freed by the garbage collector like any direct buffer.
+public final class SegmentedByteStore implements Closeable {
+    // Segments hold whole frames, so a view never splits one
+    private static final int SEGMENT_SIZE = 4 << 20;
+    private static final Freer FREER = Freer.find();
+    private static final AtomicLong allocatedBytes = new AtomicLong();
+
+    private final int segmentBytes;
+    private final List<ByteBuffer> segments = new ArrayList<>();
+    private long size;
+    private int references = 1;
+
+    public SegmentedByteStore(int frameSize) {
+        if (frameSize < 1) throw new IllegalArgumentException("Frame size must be positive: " + frameSize);
+        this.segmentBytes = Math.max(frameSize, SEGMENT_SIZE / frameSize * frameSize);
+    }
+
+    // Off-heap bytes held by all stores that have not been freed yet
+    public static long allocatedBytes() {
+        return allocatedBytes.get();
+    }
+
+    public synchronized void write(byte[] src, int offset, int length) throws IOException {
+        if (references == 0) throw new IllegalStateException("Store has been closed");
+        while (length > 0) {
+            int pos = (int) (size % segmentBytes);
+            if (pos == 0 && segments.size() == size / segmentBytes) {
+                segments.add(allocate());
+            }
+            int count = Math.min(length, segmentBytes - pos);
+            ByteBuffer segment = segments.get((int) (size / segmentBytes)).duplicate();
+            segment.position(pos);
+            segment.put(src, offset, count);
+            size += count;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    public synchronized long size() {
+        return size;
+    }
+
+    // The bytes written so far; later writes are not seen by the view
+    public synchronized PcmView view(AudioFormat format) {
+        if (references == 0) throw new IllegalStateException("Store has been closed");
+        if (format.getFrameSize() < 1 || segmentBytes % format.getFrameSize() != 0)
+            throw new IllegalArgumentException("Format does not match the store's frame size: " + format);
+        int count = (int) ((size + segmentBytes - 1) / segmentBytes);
+        ByteBuffer[] parts = new ByteBuffer[Math.max(1, count)];
+        if (count == 0) parts[0] = ByteBuffer.allocate(0);
+        for (int i = 0; i < count; i++) {
+            ByteBuffer part = segments.get(i).duplicate();
+            part.limit((int) Math.min(segmentBytes, size - (long) i * segmentBytes));
+            parts[i] = part;
+        }
+        return PcmView.of(parts, segmentBytes, format);
+    }
+
+    // Keeps the memory alive for a reader that may outlive the owner's close()
+    public synchronized SegmentedByteStore retain() {
+        if (references == 0) throw new IllegalStateException("Store has been closed");
+        references++;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        List<ByteBuffer> released;
+        synchronized (this) {
+            if (references == 0 || --references > 0) return;
+            released = new ArrayList<>(segments);
+            segments.clear();
+            size = 0;
+        }
+        for (ByteBuffer segment : released) {
+            allocatedBytes.addAndGet(-segment.capacity());
+            if (FREER != null) FREER.free(segment);
+        }
+    }
+
+    private ByteBuffer allocate() throws IOException {
+        ByteBuffer segment;
+        try {
+            segment = ByteBuffer.allocateDirect(segmentBytes);
+        } catch (OutOfMemoryError ex) {
+            throw new IOException("Out of off-heap memory after " + (size >> 20)
+                    + " MB (raise -XX:MaxDirectMemorySize or record to disk)", ex);
+        }
+        allocatedBytes.addAndGet(segmentBytes);
+        return segment;
+    }
+
+    // Frees a direct buffer now instead of when the collector finds it
+    // unreachable. There is no public API for this before the FFM API, so the
+    // JDK's own cleaner is looked up reflectively; if neither route is
+    // available the buffers are left to the collector.
+    private interface Freer {
+        void free(ByteBuffer buffer);
+
+        static Freer find() {
+            try {
+                // Java 9 and later
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                Object unsafe = field.get(null);
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                return buffer -> invoke(invokeCleaner, unsafe, buffer);
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                // Fall through to the Java 8 route
+            }
+            try {
+                Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                return buffer -> invoke(clean, invoke(cleaner, buffer));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                return null;
+            }
+        }
+
+        static Object invoke(Method method, Object target, Object... args) {
+            try {
+                return method.invoke(target, args);
+            } catch (ReflectiveOperationException ex) {
+                throw new IllegalStateException("Cannot free direct buffer", ex);
+            }
+        }
+    }
+}
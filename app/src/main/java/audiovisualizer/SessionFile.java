@@ -0,0 +1,377 @@
+package audiovisualizer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import javax.sound.sampled.AudioFormat;
+
+// A recording and everything derived from it in one file: raw PCM, its format
+// and content hash, the cached analysis results (peak summaries, spectra,
+// spectrograms) and the feature track. Big-endian, laid out as
+//
+//   header   int magic "AVS1", int version, long index offset, zero padding
+//   chunks   PCM at HEADER_BYTES, then one chunk per derived result
+//   index    format, hash, and key / type / flags / offset / length per chunk
+//
+// Opening reads only the header and the index and memory-maps the PCM, so it
+// takes the same few milliseconds for an hour as for a second. Derived chunks
+// are decoded when first asked for: attachTo lets the AnalysisCache read them
+// instead of recomputing. Derived chunks may be deflated; PCM never is, so it
+// can be mapped and played back as it is.
+public final class SessionFile {
+    public static final String EXTENSION = ".avs";
+    private static final int MAGIC = 0x41565331; // "AVS1"
+    private static final int VERSION = 1;
+    // PCM starts on a page boundary
+    private static final int HEADER_BYTES = 4096;
+    private static final int IO_CHUNK_BYTES = 1 << 16;
+    private static final byte PCM = 0x10;
+    private static final byte FEATURES = 0x11;
+    private static final byte FLAG_DEFLATE = 1;
+    private static final String PCM_KEY = "pcm";
+    private static final String FEATURES_KEY = "features";
+    private static final String[] ENCODINGS = { "PCM_SIGNED", "PCM_UNSIGNED", "PCM_FLOAT" };
+
+    private static final class Chunk {
+        final byte type;
+        final byte flags;
+        final long offset;
+        final long length;
+
+        Chunk(byte type, byte flags, long offset, long length) {
+            this.type = type;
+            this.flags = flags;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private final PcmView audio;
+    private final String fingerprint;
+    private final Map<String, ByteBuffer> derived;
+    private final Map<String, Chunk> chunks;
+    private FeatureSeries features;
+    private boolean featuresLoaded;
+
+    private SessionFile(PcmView audio, String fingerprint, Map<String, Chunk> chunks, Map<String, ByteBuffer> derived) {
+        this.audio = audio;
+        this.fingerprint = fingerprint;
+        this.chunks = chunks;
+        this.derived = derived;
+    }
+
+    public PcmView audio() {
+        return audio;
+    }
+
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    // Lets the cache read this session's results instead of computing them
+    public void attachTo(AnalysisCache cache) {
+        cache.attach(fingerprint, this::load);
+    }
+
+    // The feature track stored with the session, or null if there is none
+    public synchronized FeatureSeries features() throws IOException {
+        if (!featuresLoaded) {
+            featuresLoaded = true;
+            features = derived.containsKey(FEATURES_KEY) ? readFeatures(open(FEATURES_KEY)) : null;
+        }
+        return features;
+    }
+
+    // A cached result by key, decoded from its chunk, or null if it was not saved
+    Object load(String key) throws IOException {
+        Chunk chunk = chunks.get(key);
+        if (chunk == null || chunk.type == PCM || chunk.type == FEATURES) return null;
+        return AnalysisCache.readValue(open(key), chunk.type, new byte[IO_CHUNK_BYTES]);
+    }
+
+    private DataInputStream open(String key) {
+        InputStream in = new ByteBufferInputStream(derived.get(key).duplicate());
+        if ((chunks.get(key).flags & FLAG_DEFLATE) != 0) {
+            in = new BufferedInputStream(new InflaterInputStream(in, new Inflater(), IO_CHUNK_BYTES), IO_CHUNK_BYTES);
+        }
+        return new DataInputStream(in);
+    }
+
+    public static SessionFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(16);
+            while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+                // Keep reading until the header is complete or the file ends
+            }
+            if (header.position() < 16 || header.getInt(0) != MAGIC)
+                throw new IOException(file.getName() + " is not a session file");
+            if (header.getInt(4) != VERSION)
+                throw new IOException("Unsupported session file version " + header.getInt(4));
+            long indexOffset = header.getLong(8);
+            if (indexOffset < HEADER_BYTES || indexOffset >= channel.size())
+                throw new IOException("Session file is incomplete: " + file.getName());
+
+            ByteBuffer index = ByteBuffer.allocate((int) Math.min(Integer.MAX_VALUE, channel.size() - indexOffset));
+            while (index.hasRemaining() && channel.read(index, indexOffset + index.position()) > 0) {
+                // Read the whole index
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(index.array(), 0, index.position()));
+
+            AudioFormat format = readFormat(in);
+            String fingerprint = in.readUTF();
+            int count = in.readInt();
+            Map<String, Chunk> chunks = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                chunks.put(key, new Chunk(in.readByte(), in.readByte(), in.readLong(), in.readLong()));
+            }
+
+            Chunk pcm = chunks.get(PCM_KEY);
+            if (pcm == null) throw new IOException("Session file has no audio: " + file.getName());
+            PcmView audio = WavFile.map(channel, pcm.offset, pcm.length, format);
+
+            // Mapping is only address space; nothing is read until a chunk is decoded
+            Map<String, ByteBuffer> derived = new LinkedHashMap<>();
+            for (Map.Entry<String, Chunk> entry : chunks.entrySet()) {
+                Chunk chunk = entry.getValue();
+                if (chunk.type == PCM) continue;
+                if (chunk.length > Integer.MAX_VALUE)
+                    throw new IOException("Chunk " + entry.getKey() + " is too large to map");
+                derived.put(entry.getKey(), channel.map(FileChannel.MapMode.READ_ONLY, chunk.offset, chunk.length));
+            }
+            return new SessionFile(audio, fingerprint, chunks, derived);
+        }
+    }
+
+    // Writes the audio, every result cached for its fingerprint and the
+    // features (may be null). With compress, derived chunks are deflated.
+    public static void write(File file, PcmView audio, String fingerprint, AnalysisCache cache,
+                             FeatureSeries features, boolean compress, Progress progress) throws IOException {
+        List<String> keys = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        cache.results(fingerprint, keys, values);
+        long pcmBytes = audio.byteLength();
+        // PCM is most of the work; each derived chunk counts as one step after it
+        double steps = values.size() + (features != null ? 1 : 0);
+
+        Map<String, Chunk> chunks = new LinkedHashMap<>();
+        long indexOffset;
+        CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(file));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(counter, IO_CHUNK_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0); // index offset, patched below
+            out.write(new byte[HEADER_BYTES - 16]);
+
+            byte[] buffer = new byte[IO_CHUNK_BYTES];
+            try (InputStream in = audio.openStream()) {
+                long copied = 0;
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, n);
+                    copied += n;
+                    if (progress != null && (copied & ((1 << 24) - 1)) < n) {
+                        progress.update(0.9 * copied / Math.max(1, pcmBytes));
+                    }
+                }
+            }
+            chunks.put(PCM_KEY, new Chunk(PCM, (byte) 0, HEADER_BYTES, pcmBytes));
+
+            byte flags = compress ? FLAG_DEFLATE : 0;
+            for (int i = 0; i < keys.size(); i++) {
+                Object value = values.get(i);
+                chunks.put(keys.get(i), writeChunk(out, counter, AnalysisCache.typeOf(value), flags,
+                        (o, chunk) -> AnalysisCache.writeValue(o, value, chunk)));
+                if (progress != null) progress.update(0.9 + 0.1 * (i + 1) / steps);
+            }
+            if (features != null) {
+                chunks.put(FEATURES_KEY, writeChunk(out, counter, FEATURES, flags,
+                        (o, chunk) -> writeFeatures(o, features, chunk)));
+            }
+
+            out.flush();
+            indexOffset = counter.count;
+            writeFormat(out, audio.format());
+            out.writeUTF(fingerprint);
+            out.writeInt(chunks.size());
+            for (Map.Entry<String, Chunk> entry : chunks.entrySet()) {
+                Chunk chunk = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeByte(chunk.type);
+                out.writeByte(chunk.flags);
+                out.writeLong(chunk.offset);
+                out.writeLong(chunk.length);
+            }
+        }
+
+        // Until this is patched in, the file does not open as a session
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(8);
+            raf.writeLong(indexOffset);
+        }
+        if (progress != null) progress.update(1);
+    }
+
+    private interface ChunkWriter {
+        void write(DataOutputStream out, byte[] chunk) throws IOException;
+    }
+
+    private static Chunk writeChunk(DataOutputStream out, CountingOutputStream counter, byte type, byte flags,
+                                    ChunkWriter writer) throws IOException {
+        out.flush();
+        long offset = counter.count;
+        byte[] chunk = new byte[IO_CHUNK_BYTES];
+        if ((flags & FLAG_DEFLATE) != 0) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            // Closing the data stream would close the file, so only finish it
+            DeflaterOutputStream deflate = new DeflaterOutputStream(new NonClosing(out), deflater, IO_CHUNK_BYTES);
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(deflate, IO_CHUNK_BYTES));
+            writer.write(data, chunk);
+            data.flush();
+            deflate.finish();
+            deflater.end();
+        } else {
+            writer.write(out, chunk);
+        }
+        out.flush();
+        return new Chunk(type, flags, offset, counter.count - offset);
+    }
+
+    // Column per feature: sample rate, frame size, hop, frame and feature
+    // counts, then every frame of the first feature, of the second, ...
+    private static void writeFeatures(DataOutputStream out, FeatureSeries series, byte[] chunk) throws IOException {
+        FeatureSeries.Feature[] all = FeatureSeries.Feature.values();
+        long frames = series.frames();
+        out.writeFloat(series.sampleRate());
+        out.writeInt(series.frameSize());
+        out.writeInt(series.hop());
+        out.writeLong(frames);
+        out.writeInt(all.length);
+        float[] column = new float[chunk.length / 4];
+        for (FeatureSeries.Feature feature : all) {
+            for (long f = 0; f < frames; f += column.length) {
+                int n = (int) Math.min(column.length, frames - f);
+                series.read(feature, f, column, 0, n);
+                AnalysisCache.writeFloats(out, n == column.length ? column : Arrays.copyOf(column, n), chunk);
+            }
+        }
+    }
+
+    private static FeatureSeries readFeatures(DataInputStream in) throws IOException {
+        FeatureSeries series = new FeatureSeries(in.readFloat(), in.readInt(), in.readInt());
+        long frames = in.readLong();
+        int count = in.readInt();
+        if (count != FeatureSeries.Feature.values().length || frames > Integer.MAX_VALUE)
+            throw new IOException("Unsupported feature track: " + count + " features, " + frames + " frames");
+        byte[] chunk = new byte[IO_CHUNK_BYTES];
+        float[][] columns = new float[count][];
+        for (int f = 0; f < count; f++) columns[f] = AnalysisCache.readFloats(in, (int) frames, chunk);
+        float[] row = new float[count];
+        for (int i = 0; i < frames; i++) {
+            for (int f = 0; f < count; f++) row[f] = columns[f][i];
+            series.append(row);
+        }
+        return series;
+    }
+
+    private static void writeFormat(DataOutputStream out, AudioFormat format) throws IOException {
+        out.writeUTF(format.getEncoding().toString());
+        out.writeFloat(format.getSampleRate());
+        out.writeInt(format.getSampleSizeInBits());
+        out.writeInt(format.getChannels());
+        out.writeInt(format.getFrameSize());
+        out.writeFloat(format.getFrameRate());
+        out.writeBoolean(format.isBigEndian());
+    }
+
+    private static AudioFormat readFormat(DataInputStream in) throws IOException {
+        String name = in.readUTF();
+        AudioFormat.Encoding encoding = null;
+        for (String known : ENCODINGS) {
+            if (known.equals(name)) encoding = new AudioFormat.Encoding(known);
+        }
+        if (encoding == null) throw new IOException("Unsupported encoding in session file: " + name);
+        return new AudioFormat(encoding, in.readFloat(), in.readInt(), in.readInt(), in.readInt(),
+                in.readFloat(), in.readBoolean());
+    }
+
+    // Bytes written so far, for chunk offsets
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class NonClosing extends FilterOutputStream {
+        NonClosing(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] dst, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(dst, off, n);
+            return n;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package audiovisualizer;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Holds a generated or replayed stream to speed times real time: after n
+// frames, waits until n / (frameRate * speed) seconds have passed since the
+// first call. A speed of 0 or less means no waiting at all.
+final class SourcePacer {
+    private final double framesPerNano;
+    private long startNanos = -1;
+
+    SourcePacer(float frameRate, double speed) {
+        this.framesPerNano = speed > 0 ? frameRate * speed / 1e9 : 0;
+    }
+
+    boolean throttled() {
+        return framesPerNano > 0;
+    }
+
+    void pace(long frames) {
+        if (framesPerNano == 0) return;
+        long now = System.nanoTime();
+        if (startNanos < 0) startNanos = now;
+        long due = startNanos + (long) (frames / framesPerNano);
+        while (now < due && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(due - now);
+            now = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package audiovisualizer;
+
+// Bounded history of STFT magnitude frames. All frame storage is allocated up
+// front; once full, each new frame overwrites the oldest one. Written by the
+// thread feeding the StftProcessor and read by the Swing thread.
+public final class SpectrogramBuffer implements StftProcessor.FrameListener {
+    private final float[][] frames;
+    private final int bins;
+    private long written;
+    private long generation;
+
+    public SpectrogramBuffer(int capacity, int bins) {
+        if (capacity < 1 || bins < 1)
+            throw new IllegalArgumentException("Capacity and bins must be positive");
+        this.frames = new float[capacity][bins];
+        this.bins = bins;
+    }
+
+    public int capacity() {
+        return frames.length;
+    }
+
+    public int bins() {
+        return bins;
+    }
+
+    @Override
+    public synchronized void onFrame(float[] magnitudes) {
+        System.arraycopy(magnitudes, 0, frames[(int) (written % frames.length)], 0, bins);
+        written++;
+    }
+
+    // Total frames received since the last clear, including overwritten ones
+    public synchronized long framesWritten() {
+        return written;
+    }
+
+    // Copies frame number frameIndex into dst; false if it has been overwritten
+    // or not written yet.
+    public synchronized boolean copyFrame(long frameIndex, float[] dst) {
+        if (frameIndex < 0 || frameIndex >= written || frameIndex < written - frames.length)
+            return false;
+        System.arraycopy(frames[(int) (frameIndex % frames.length)], 0, dst, 0, bins);
+        return true;
+    }
+
+    // Changes on every clear (and so every restore); a reader that sees a new
+    // value must redraw everything, since framesWritten may not have gone down
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized void clear() {
+        written = 0;
+        generation++;
+    }
+
+    // Copies of the retained frames, oldest first
+    public synchronized float[][] snapshot() {
+        int count = (int) Math.min(written, frames.length);
+        float[][] copy = new float[count][];
+        for (int i = 0; i < count; i++) {
+            copy[i] = frames[(int) ((written - count + i) % frames.length)].clone();
+        }
+        return copy;
+    }
+
+    // Replaces the contents with frames taken from snapshot()
+    public synchronized void restore(float[][] snapshot) {
+        clear();
+        for (float[] frame : snapshot) onFrame(frame);
+    }
+}
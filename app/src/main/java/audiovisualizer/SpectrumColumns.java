@@ -0,0 +1,125 @@
+package audiovisualizer;
+
+// Reduces a magnitude spectrum (bins 0..Nyquist) to one normalized height per
+// pixel column, so drawing it costs O(width) however many bins the FFT produced.
+// Each column summarises the bins it covers by their peak or mean, on a linear
+// or logarithmic frequency axis and a linear or dB magnitude axis.
+public final class SpectrumColumns {
+    // Bottom of the dB axis, relative to the largest bin
+    public static final double MIN_DB = -90;
+    // Left edge of the log frequency axis (or bin 1, if that is higher)
+    public static final double LOG_MIN_HZ = 20;
+
+    public enum FrequencyAxis {
+        LINEAR("Linear Hz"), LOG("Log Hz");
+
+        private final String label;
+
+        FrequencyAxis(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public enum MagnitudeAxis {
+        LINEAR("Linear"), DB("dB");
+
+        private final String label;
+
+        MagnitudeAxis(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public enum Reduction {
+        PEAK("Peak"), MEAN("Mean");
+
+        private final String label;
+
+        Reduction(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private SpectrumColumns() {
+    }
+
+    // Heights in [0, 1] for the given number of columns; the largest bin maps to 1
+    public static float[] reduce(double[] magnitudes, int columns, float sampleRate,
+                                 FrequencyAxis frequencyAxis, MagnitudeAxis magnitudeAxis, Reduction reduction) {
+        if (columns < 0)
+            throw new IllegalArgumentException("Column count must not be negative: " + columns);
+        float[] heights = new float[columns];
+        int bins = magnitudes.length;
+        if (bins == 0 || columns == 0) return heights;
+
+        double max = 0;
+        for (double m : magnitudes) max = Math.max(max, m);
+        if (max <= 0) return heights;
+
+        double logStart = logStartBin(bins, sampleRate);
+        for (int c = 0; c < columns; c++) {
+            int from = firstBin(c, columns, bins, logStart, frequencyAxis);
+            // Columns narrower than a bin repeat the bin under them
+            int to = Math.max(from + 1, firstBin(c + 1, columns, bins, logStart, frequencyAxis));
+
+            double value;
+            if (reduction == Reduction.PEAK) {
+                value = 0;
+                for (int i = from; i < to; i++) value = Math.max(value, magnitudes[i]);
+            } else {
+                double sum = 0;
+                for (int i = from; i < to; i++) sum += magnitudes[i];
+                value = sum / (to - from);
+            }
+
+            double normalized = value / max;
+            if (magnitudeAxis == MagnitudeAxis.DB) {
+                double db = 20 * Math.log10(Math.max(normalized, 1e-12));
+                normalized = Math.max(0, 1 - db / MIN_DB);
+            }
+            heights[c] = (float) normalized;
+        }
+        return heights;
+    }
+
+    // First bin of column c; column `columns` gives the end of the last one
+    private static int firstBin(int c, int columns, int bins, double logStart, FrequencyAxis axis) {
+        if (c >= columns) return bins;
+        if (axis == FrequencyAxis.LINEAR) {
+            return (int) ((long) c * bins / columns);
+        }
+        double bin = logStart * Math.pow(bins / logStart, (double) c / columns);
+        return Math.min(bins - 1, (int) bin);
+    }
+
+    // Fractional bin where the log axis starts; DC has no place on it
+    private static double logStartBin(int bins, float sampleRate) {
+        double binWidth = sampleRate / 2.0 / bins;
+        return Math.min(bins - 1, Math.max(1, LOG_MIN_HZ / binWidth));
+    }
+
+    // Frequency at the left edge of column c, for axis labels
+    public static double frequencyAt(int c, int columns, int bins, float sampleRate, FrequencyAxis axis) {
+        if (axis == FrequencyAxis.LINEAR) {
+            return sampleRate / 2.0 * c / columns;
+        }
+        double binWidth = sampleRate / 2.0 / Math.max(1, bins);
+        double logStart = logStartBin(Math.max(1, bins), sampleRate);
+        return binWidth * logStart * Math.pow(bins / logStart, (double) c / columns);
+    }
+}
@@ -0,0 +1,148 @@
+package audiovisualizer;
+
+import java.util.Arrays;
+
+// Streaming short-time Fourier transform. Samples are pushed in blocks of any
+// size; once a full frame is buffered, every hop samples the latest frameSize
+// samples are windowed, transformed and handed to the listeners as a magnitude
+// spectrum. Memory depends only on the frame size, never on the stream length.
+// Not thread-safe: one thread feeds a processor.
+public final class StftProcessor {
+    public interface FrameListener {
+        // magnitudes holds frameSize/2 + 1 bins and is reused for the next frame
+        void onFrame(float[] magnitudes);
+    }
+
+    private final int frameSize;
+    private final int hop;
+    private final double[] window;
+    private final double scale;
+    private final RealFft plan;
+    private final FrameListener[] listeners;
+    private final Histogram fftTime;
+
+    // Circular buffer of the most recent frameSize samples
+    private final double[] input;
+    private int writePos;
+    private int untilNextFrame;
+
+    private final double[] real;
+    private final double[] imag;
+    private final double[] amplitudes;
+    private final float[] magnitudes;
+
+    public StftProcessor(int frameSize, int hop, WindowFunction window, FrameListener... listeners) {
+        if (frameSize < 2 || (frameSize & 1) != 0)
+            throw new IllegalArgumentException("Frame size must be even: " + frameSize);
+        if (hop < 1)
+            throw new IllegalArgumentException("Hop must be positive: " + hop);
+        this.frameSize = frameSize;
+        this.hop = hop;
+        this.window = window.coefficients(frameSize);
+        this.plan = FftPlanner.realPlan(frameSize);
+        this.listeners = listeners.clone();
+        this.fftTime = Metrics.fft(frameSize);
+
+        // Scale so a full-scale sine in the middle of a bin reads about 1.0
+        double sum = 0;
+        for (double w : this.window) sum += w;
+        this.scale = 2 / sum;
+
+        input = new double[frameSize];
+        real = new double[plan.bins()];
+        imag = new double[plan.bins()];
+        amplitudes = new double[plan.bins()];
+        magnitudes = new float[plan.bins()];
+        reset();
+    }
+
+    public int frameSize() {
+        return frameSize;
+    }
+
+    public int hop() {
+        return hop;
+    }
+
+    public int bins() {
+        return magnitudes.length;
+    }
+
+    public void reset() {
+        Arrays.fill(input, 0);
+        writePos = 0;
+        untilNextFrame = frameSize;
+    }
+
+    public void feed(float[] samples, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            push(samples[i]);
+        }
+    }
+
+    private void push(double sample) {
+        input[writePos] = sample;
+        if (++writePos == frameSize) writePos = 0;
+        if (--untilNextFrame == 0) {
+            emitFrame();
+            untilNextFrame = hop;
+        }
+    }
+
+    private void emitFrame() {
+        // Oldest sample sits at writePos; pack even/odd samples for the real FFT
+        int src = writePos;
+        for (int i = 0; i < frameSize; i += 2) {
+            real[i >> 1] = input[src] * window[i];
+            if (++src == frameSize) src = 0;
+            imag[i >> 1] = input[src] * window[i + 1];
+            if (++src == frameSize) src = 0;
+        }
+
+        long start = System.nanoTime();
+        plan.realForwardPacked(real, imag);
+        fftTime.recordSince(start);
+
+        // Same kernel as the whole-clip spectrum, so the vector version covers frames too
+        Kernels.active().magnitudes(real, imag, amplitudes, amplitudes.length);
+        for (int k = 0; k < magnitudes.length; k++) {
+            magnitudes[k] = (float) (amplitudes[k] * scale);
+        }
+        for (FrameListener listener : listeners) {
+            listener.onFrame(magnitudes);
+        }
+    }
+
+    // Passes on the bin-wise maximum of every run of count frames, so a long
+    // clip can be shown in fewer columns without skipping the audio between
+    // them. Call flush() after the last frame to emit a shorter final run.
+    public static final class MaxPool implements FrameListener {
+        private final FrameListener target;
+        private final int count;
+        private float[] pooled;
+        private int pending;
+
+        public MaxPool(int count, FrameListener target) {
+            if (count < 1) throw new IllegalArgumentException("Pool size must be positive: " + count);
+            this.count = count;
+            this.target = target;
+        }
+
+        @Override
+        public void onFrame(float[] magnitudes) {
+            if (pooled == null) pooled = new float[magnitudes.length];
+            if (pending == 0) {
+                System.arraycopy(magnitudes, 0, pooled, 0, pooled.length);
+            } else {
+                for (int b = 0; b < pooled.length; b++) pooled[b] = Math.max(pooled[b], magnitudes[b]);
+            }
+            if (++pending == count) flush();
+        }
+
+        public void flush() {
+            if (pending == 0) return;
+            pending = 0;
+            target.onFrame(pooled);
+        }
+    }
+}
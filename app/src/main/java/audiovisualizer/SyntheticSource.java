@@ -0,0 +1,122 @@
+package audiovisualizer;
+
+import java.util.Arrays;
+import java.util.Random;
+import javax.sound.sampled.AudioFormat;
+
+// Generated test signals in the recording format (16-bit mono), at speed times
+// real time or, with speed 0, as fast as the pipeline takes them
+public final class SyntheticSource implements AudioSource {
+    public enum Signal {
+        SWEEP("Sine sweep"),
+        NOISE("White noise"),
+        MULTI_TONE("Multi-tone");
+
+        private final String label;
+
+        Signal(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    // Logarithmic sweep from 20 Hz to 20 kHz (or just below Nyquist), repeated
+    private static final double SWEEP_LOW = 20;
+    private static final double SWEEP_HIGH = 20000;
+    private static final double SWEEP_SECONDS = 10;
+    // Mains hum, its neighbour and a test tone, the tone tracker's defaults, plus
+    // two higher partials
+    private static final double[] TONES = { 50, 60, 440, 1000, 5000 };
+    private static final double AMPLITUDE = 0.5;
+
+    private final Signal signal;
+    private final AudioFormat format;
+    private final long totalFrames;
+    private final double speed;
+    private SourcePacer pacer;
+    private long frame;
+
+    private Random random;
+    private double sweepPhase;
+    private final double[] tonePhases = new double[TONES.length];
+
+    // Runs for durationSeconds, or until closed if durationSeconds is 0 or less
+    public SyntheticSource(Signal signal, float sampleRate, double durationSeconds, double speed) {
+        if (!(sampleRate > 0)) throw new IllegalArgumentException("Sample rate must be positive: " + sampleRate);
+        this.signal = signal;
+        this.format = new AudioFormat(sampleRate, 16, 1, true, true);
+        this.totalFrames = durationSeconds > 0 ? Math.round(durationSeconds * sampleRate) : Long.MAX_VALUE;
+        this.speed = speed;
+    }
+
+    @Override
+    public AudioFormat format() {
+        return format;
+    }
+
+    @Override
+    public void open() {
+        pacer = new SourcePacer(format.getSampleRate(), speed);
+        frame = 0;
+        random = new Random(1);
+        sweepPhase = 0;
+        Arrays.fill(tonePhases, 0);
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+        int frames = (int) Math.min(length / 2, totalFrames - frame);
+        if (frames <= 0) return -1;
+        double rate = format.getSampleRate();
+        double top = Math.min(SWEEP_HIGH, rate * 0.45);
+        for (int i = 0; i < frames; i++, frame++) {
+            double value;
+            switch (signal) {
+                case SWEEP: {
+                    double t = (frame % (long) (SWEEP_SECONDS * rate)) / rate;
+                    double f = SWEEP_LOW * Math.pow(top / SWEEP_LOW, t / SWEEP_SECONDS);
+                    sweepPhase += 2 * Math.PI * f / rate;
+                    if (sweepPhase > 2 * Math.PI) sweepPhase -= 2 * Math.PI;
+                    value = Math.sin(sweepPhase);
+                    break;
+                }
+                case NOISE:
+                    value = random.nextDouble() * 2 - 1;
+                    break;
+                default: {
+                    value = 0;
+                    for (int k = 0; k < TONES.length; k++) {
+                        tonePhases[k] += 2 * Math.PI * TONES[k] / rate;
+                        if (tonePhases[k] > 2 * Math.PI) tonePhases[k] -= 2 * Math.PI;
+                        value += Math.sin(tonePhases[k]);
+                    }
+                    value /= TONES.length;
+                    break;
+                }
+            }
+            int sample = (int) Math.round(value * AMPLITUDE * 32767);
+            buffer[offset + 2 * i] = (byte) (sample >> 8);
+            buffer[offset + 2 * i + 1] = (byte) sample;
+        }
+        pacer.pace(frame);
+        return frames * 2;
+    }
+
+    @Override
+    public boolean realTime() {
+        return pacer == null || pacer.throttled();
+    }
+
+    @Override
+    public String describe() {
+        return signal.toString().toLowerCase();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,86 @@
+package audiovisualizer;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Paints a set of components, each placed at a rectangle of the output, into a
+// PNG of any size. The image is rendered in bands of rows, each band in tiles
+// of at most TILE_WIDTH columns, and every band is encoded as soon as it is
+// complete, so memory stays at about BAND_BYTES however large the image is.
+// Components are painted with a clip for the tile, so panels that honour the
+// clip only draw what the tile shows.
+public final class TiledRenderer {
+    public static final int TILE_WIDTH = 2048;
+    private static final int MAX_BAND_ROWS = 512;
+    private static final long BAND_BYTES = 16L << 20;
+
+    private final int width;
+    private final int height;
+    private final Color background;
+    private final List<Component> components = new ArrayList<>();
+    private final List<Rectangle> bounds = new ArrayList<>();
+
+    public TiledRenderer(int width, int height, Color background) {
+        if (width < 1 || height < 1)
+            throw new IllegalArgumentException("Image size must be positive: " + width + "x" + height);
+        this.width = width;
+        this.height = height;
+        this.background = background;
+    }
+
+    // Sizes the component to the rectangle; it must not be showing on screen
+    public void add(Component component, Rectangle area) {
+        component.setSize(area.width, area.height);
+        components.add(component);
+        bounds.add(new Rectangle(area));
+    }
+
+    // Reports progress after each band
+    public void writePng(OutputStream out, Progress progress) throws IOException {
+        PngStreamWriter png = new PngStreamWriter(out, width, height);
+        int bandRows = (int) Math.max(1, Math.min(MAX_BAND_ROWS, BAND_BYTES / 4 / width));
+        int tileWidth = Math.min(width, TILE_WIDTH);
+        BufferedImage tile = new BufferedImage(tileWidth, bandRows, BufferedImage.TYPE_INT_RGB);
+        int[] band = new int[width * bandRows];
+
+        for (int y = 0; y < height; y += bandRows) {
+            int rows = Math.min(bandRows, height - y);
+            for (int x = 0; x < width; x += tileWidth) {
+                int columns = Math.min(tileWidth, width - x);
+                paintTile(tile, x, y, columns, rows);
+                tile.getRGB(0, 0, columns, rows, band, x, width);
+            }
+            png.writeRows(band, 0, width, rows);
+            if (progress != null) progress.update((double) (y + rows) / height);
+        }
+        png.finish();
+    }
+
+    private void paintTile(BufferedImage tile, int x, int y, int columns, int rows) {
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.setColor(background);
+            g.fillRect(0, 0, columns, rows);
+            Rectangle area = new Rectangle(x, y, columns, rows);
+            for (int i = 0; i < components.size(); i++) {
+                Rectangle r = bounds.get(i);
+                if (!r.intersects(area)) continue;
+                Graphics2D cg = (Graphics2D) g.create(r.x - x, r.y - y, r.width, r.height);
+                try {
+                    components.get(i).paint(cg);
+                } finally {
+                    cg.dispose();
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+}
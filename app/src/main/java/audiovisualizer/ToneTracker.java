@@ -0,0 +1,182 @@
+package audiovisualizer;
+
+import java.util.Arrays;
+
+// Level of a few chosen frequencies, updated every sample with a sliding DFT:
+// each tone keeps the DFT of the last windowLength samples at its exact
+// frequency (no bin rounding), and a new sample adds itself and removes the
+// one leaving the window, so a sample costs O(number of tones). Levels are
+// peak amplitudes in dBFS (a full-scale sine at the tone's frequency reads
+// about 0 dB), published every CHECK_INTERVAL samples.
+//
+// Once the first window is full, a listener hears when a tone rises above the
+// threshold or falls back below it minus the hysteresis. One thread feeds the
+// tracker (and receives the callbacks); any thread may read the levels.
+public final class ToneTracker {
+    public static final double MIN_DB = -120;
+    // Levels and thresholds are checked this often (about 6 ms at 44.1 kHz),
+    // so a short burst inside a long block is still seen
+    public static final int CHECK_INTERVAL = 256;
+
+    public interface ThresholdListener {
+        // Called on the feeding thread when tone crosses the threshold
+        void onThreshold(int tone, double frequency, double levelDb, boolean above);
+    }
+
+    private final double[] frequencies;
+    private final int windowLength;
+    private final double thresholdDb;
+    private final double hysteresisDb;
+    private final ThresholdListener listener;
+
+    // Last windowLength samples
+    private final float[] history;
+    private int pos;
+    private long fed;
+
+    // Per tone: running sum of x[m] * e^(-i w m) over the window (sumRe, sumIm),
+    // the phasor e^(-i w n) for the current sample, its step e^(-i w), and
+    // e^(i w N), which turns the current phasor into the one the outgoing
+    // sample was added with
+    private final double[] sumRe, sumIm;
+    private final double[] phaseRe, phaseIm;
+    private final double[] stepRe, stepIm;
+    private final double[] backRe, backIm;
+    private final boolean[] above;
+    private final double[] levels;
+
+    public ToneTracker(float sampleRate, double[] frequencies, int windowLength,
+                       double thresholdDb, double hysteresisDb, ThresholdListener listener) {
+        if (windowLength < 1)
+            throw new IllegalArgumentException("Window length must be positive: " + windowLength);
+        if (hysteresisDb < 0)
+            throw new IllegalArgumentException("Hysteresis must not be negative: " + hysteresisDb);
+        for (double f : frequencies) {
+            if (!(f > 0 && f < sampleRate / 2))
+                throw new IllegalArgumentException("Frequency must be between 0 and " + sampleRate / 2 + " Hz: " + f);
+        }
+        this.frequencies = frequencies.clone();
+        this.windowLength = windowLength;
+        this.thresholdDb = thresholdDb;
+        this.hysteresisDb = hysteresisDb;
+        this.listener = listener;
+
+        int tones = frequencies.length;
+        history = new float[windowLength];
+        sumRe = new double[tones];
+        sumIm = new double[tones];
+        phaseRe = new double[tones];
+        phaseIm = new double[tones];
+        stepRe = new double[tones];
+        stepIm = new double[tones];
+        backRe = new double[tones];
+        backIm = new double[tones];
+        above = new boolean[tones];
+        levels = new double[tones];
+        for (int t = 0; t < tones; t++) {
+            double w = 2 * Math.PI * frequencies[t] / sampleRate;
+            stepRe[t] = Math.cos(w);
+            stepIm[t] = -Math.sin(w);
+            backRe[t] = Math.cos(w * windowLength);
+            backIm[t] = Math.sin(w * windowLength);
+        }
+        reset();
+    }
+
+    public int tones() {
+        return frequencies.length;
+    }
+
+    public double frequency(int tone) {
+        return frequencies[tone];
+    }
+
+    public int windowLength() {
+        return windowLength;
+    }
+
+    public double thresholdDb() {
+        return thresholdDb;
+    }
+
+    public void reset() {
+        Arrays.fill(history, 0);
+        pos = 0;
+        fed = 0;
+        Arrays.fill(sumRe, 0);
+        Arrays.fill(sumIm, 0);
+        Arrays.fill(phaseRe, 1);
+        Arrays.fill(phaseIm, 0);
+        Arrays.fill(above, false);
+        synchronized (levels) {
+            Arrays.fill(levels, MIN_DB);
+        }
+    }
+
+    public void feed(float[] samples, int offset, int length) {
+        int end = offset + length;
+        while (offset < end) {
+            int run = Math.min(end - offset, CHECK_INTERVAL);
+            update(samples, offset, run);
+            publish();
+            offset += run;
+        }
+    }
+
+    private void update(float[] samples, int offset, int length) {
+        int tones = frequencies.length;
+        for (int i = offset; i < offset + length; i++) {
+            double in = samples[i];
+            double out = history[pos];
+            history[pos] = samples[i];
+            if (++pos == windowLength) pos = 0;
+
+            for (int t = 0; t < tones; t++) {
+                double pr = phaseRe[t], pi = phaseIm[t];
+                // The outgoing sample was added with phasor * e^(i w N)
+                double or = out * (pr * backRe[t] - pi * backIm[t]);
+                double oi = out * (pr * backIm[t] + pi * backRe[t]);
+                sumRe[t] += in * pr - or;
+                sumIm[t] += in * pi - oi;
+                phaseRe[t] = pr * stepRe[t] - pi * stepIm[t];
+                phaseIm[t] = pr * stepIm[t] + pi * stepRe[t];
+            }
+            // Keep the phasors on the unit circle despite rounding
+            if ((++fed & 0xFFF) == 0) {
+                for (int t = 0; t < tones; t++) {
+                    double norm = Math.sqrt(phaseRe[t] * phaseRe[t] + phaseIm[t] * phaseIm[t]);
+                    phaseRe[t] /= norm;
+                    phaseIm[t] /= norm;
+                }
+            }
+        }
+    }
+
+    private void publish() {
+        int tones = frequencies.length;
+        double scale = 2.0 / windowLength;
+        for (int t = 0; t < tones; t++) {
+            double amplitude = Math.sqrt(sumRe[t] * sumRe[t] + sumIm[t] * sumIm[t]) * scale;
+            double db = Math.max(MIN_DB, 20 * Math.log10(Math.max(amplitude, 1e-12)));
+            synchronized (levels) {
+                levels[t] = db;
+            }
+            // A partly filled window leaks neighbouring tones into every level
+            if (fed < windowLength) continue;
+            if (!above[t] && db >= thresholdDb) {
+                above[t] = true;
+                if (listener != null) listener.onThreshold(t, frequencies[t], db, true);
+            } else if (above[t] && db < thresholdDb - hysteresisDb) {
+                above[t] = false;
+                if (listener != null) listener.onThreshold(t, frequencies[t], db, false);
+            }
+        }
+    }
+
+    // Copies the latest level of each tone, in dBFS, into dst
+    public void copyLevels(double[] dst) {
+        synchronized (levels) {
+            System.arraycopy(levels, 0, dst, 0, Math.min(dst.length, levels.length));
+        }
+    }
+}
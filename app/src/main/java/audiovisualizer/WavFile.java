@@ -0,0 +1,118 @@
+package audiovisualizer;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Opens audio files as PcmViews. For PCM WAV files the format is decoded by
+// AudioInputStream and the data chunk is memory-mapped, so opening is fast and
+// the samples stay off the heap. Other formats are decoded into memory.
+public final class WavFile {
+    // Mapped in pieces; a single MappedByteBuffer cannot exceed 2 GB
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private WavFile() {
+    }
+
+    public static PcmView open(File file) throws IOException, UnsupportedAudioFileException {
+        AudioFormat format;
+        try (AudioInputStream ais = AudioSystem.getAudioInputStream(file)) {
+            format = ais.getFormat();
+        }
+
+        AudioFormat.Encoding encoding = format.getEncoding();
+        boolean pcm = AudioFormat.Encoding.PCM_SIGNED.equals(encoding)
+                || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding)
+                || AudioFormat.Encoding.PCM_FLOAT.equals(encoding);
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] data = pcm ? findDataChunk(channel) : null;
+            if (data == null) return readFully(file);
+            return map(channel, data[0], data[1], format);
+        }
+    }
+
+    // Offset and length of the "data" chunk, or null if this is not a RIFF/WAVE file
+    static long[] findDataChunk(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        if (readAt(channel, header, 0) < 12) return null;
+        if (!"RIFF".equals(id(header, 0)) || !"WAVE".equals(id(header, 8))) return null;
+
+        ByteBuffer chunk = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        long pos = 12;
+        while (pos + 8 <= fileSize) {
+            chunk.clear();
+            if (readAt(channel, chunk, pos) < 8) break;
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            if ("data".equals(id(chunk, 0))) {
+                long offset = pos + 8;
+                // Writers that never patched the header leave 0 or 0xFFFFFFFF here
+                if (size == 0 || offset + size > fileSize) size = fileSize - offset;
+                return new long[] { offset, size };
+            }
+            pos += 8 + size + (size & 1);
+        }
+        throw new IOException("WAV file has no data chunk");
+    }
+
+    static PcmView map(FileChannel channel, long offset, long length, AudioFormat format)
+            throws IOException {
+        int frameSize = Math.max(1, format.getFrameSize());
+        long segmentBytes = Math.max(frameSize, MAX_SEGMENT_BYTES / frameSize * frameSize);
+
+        List<ByteBuffer> segments = new ArrayList<>();
+        for (long pos = 0; pos < length; pos += segmentBytes) {
+            long size = Math.min(segmentBytes, length - pos);
+            segments.add(channel.map(FileChannel.MapMode.READ_ONLY, offset + pos, size));
+        }
+        if (segments.isEmpty()) segments.add(ByteBuffer.allocate(0));
+        return PcmView.of(segments.toArray(new ByteBuffer[0]), segmentBytes, format);
+    }
+
+    // Fallback for non-WAV or compressed files: decode to PCM in memory
+    private static PcmView readFully(File file) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream source = AudioSystem.getAudioInputStream(file)) {
+            AudioFormat format = source.getFormat();
+            AudioInputStream ais = source;
+            if (!AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding())) {
+                format = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, false);
+                ais = AudioSystem.getAudioInputStream(format, source);
+            }
+            // Off-heap and unbounded like a mapped file; freed by the collector with the view
+            SegmentedByteStore out = new SegmentedByteStore(format.getFrameSize());
+            byte[] buffer = new byte[65536];
+            int count;
+            while ((count = ais.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.view(format);
+        }
+    }
+
+    private static int readAt(FileChannel channel, ByteBuffer dst, long pos) throws IOException {
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int count = channel.read(dst, pos + total);
+            if (count < 0) break;
+            total += count;
+        }
+        return total;
+    }
+
+    private static String id(ByteBuffer b, int pos) {
+        byte[] chars = new byte[4];
+        for (int i = 0; i < 4; i++) chars[i] = b.get(pos + i);
+        return new String(chars, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,151 @@
+package audiovisualizer;
+
+import javax.sound.sampled.AudioFormat;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+// Streams captured PCM straight into a WAV file, so recordings are limited by
+// disk space rather than heap. Writes go through one large direct buffer; the
+// RIFF and data chunk sizes are patched into the header when the recorder is
+// closed. Samples are converted to the little-endian layout WAV requires.
+// The data is hashed as it is written, so the finished file's fingerprint
+// needs no second pass over it.
+public final class WavRecorder implements Closeable {
+    private static final int HEADER_BYTES = 44;
+    private static final int BUFFER_BYTES = 1 << 20;
+
+    private final File file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final AudioFormat fileFormat;
+    private final int bytesPerSample;
+    private final boolean swapBytes;
+    private final boolean flipSign;
+    private final MessageDigest digest;
+    private long dataBytes;
+    private String fingerprint;
+
+    public WavRecorder(File file, AudioFormat format) throws IOException {
+        int bits = format.getSampleSizeInBits();
+        if (bits % 8 != 0 || bits < 8 || bits > 32)
+            throw new IllegalArgumentException("Unsupported sample size: " + bits + " bits");
+
+        this.file = file;
+        this.bytesPerSample = bits / 8;
+        this.swapBytes = format.isBigEndian() && bytesPerSample > 1;
+        // 8-bit WAV data is unsigned
+        this.flipSign = bytesPerSample == 1 && AudioFormat.Encoding.PCM_SIGNED.equals(format.getEncoding());
+
+        AudioFormat.Encoding encoding = format.getEncoding();
+        if (bytesPerSample == 1) encoding = AudioFormat.Encoding.PCM_UNSIGNED;
+        this.fileFormat = new AudioFormat(encoding, format.getSampleRate(), bits, format.getChannels(),
+                format.getFrameSize(), format.getFrameRate(), false);
+        this.digest = AnalysisCache.newDigest(fileFormat);
+
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        writeHeader(0);
+        channel.position(HEADER_BYTES);
+    }
+
+    public File file() {
+        return file;
+    }
+
+    // Format of the data as stored in the file
+    public AudioFormat fileFormat() {
+        return fileFormat;
+    }
+
+    public long dataBytes() {
+        return dataBytes;
+    }
+
+    // AnalysisCache fingerprint of the file's audio; null until closed
+    public String fingerprint() {
+        return fingerprint;
+    }
+
+    // Appends whole frames in the capture format
+    public void write(byte[] data, int offset, int length) throws IOException {
+        int end = offset + length;
+        if (!swapBytes && !flipSign) {
+            while (offset < end) {
+                if (!buffer.hasRemaining()) flush();
+                int count = Math.min(end - offset, buffer.remaining());
+                buffer.put(data, offset, count);
+                offset += count;
+            }
+        } else {
+            for (int i = offset; i + bytesPerSample <= end; i += bytesPerSample) {
+                if (buffer.remaining() < bytesPerSample) flush();
+                if (flipSign) {
+                    buffer.put((byte) (data[i] ^ 0x80));
+                } else {
+                    for (int b = bytesPerSample - 1; b >= 0; b--) buffer.put(data[i + b]);
+                }
+            }
+        }
+        dataBytes += length;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        digest.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            writeHeader(dataBytes);
+            fingerprint = AnalysisCache.fingerprint(digest);
+        } finally {
+            channel.close();
+        }
+    }
+
+    // Sizes above the 32-bit RIFF limit are written as 0xFFFFFFFF; WavFile then
+    // takes the data length from the file size.
+    private void writeHeader(long data) throws IOException {
+        long riffSize = Math.min(0xFFFFFFFFL, data + HEADER_BYTES - 8);
+        long dataSize = Math.min(0xFFFFFFFFL, data);
+        int channels = fileFormat.getChannels();
+        int sampleRate = (int) fileFormat.getSampleRate();
+        int blockAlign = channels * bytesPerSample;
+        int formatTag = AudioFormat.Encoding.PCM_FLOAT.equals(fileFormat.getEncoding()) ? 3 : 1;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) riffSize);
+        header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+        header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+        header.putInt(16);
+        header.putShort((short) formatTag);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) (bytesPerSample * 8));
+        header.put("data".getBytes(StandardCharsets.US_ASCII));
+        header.putInt((int) dataSize);
+        header.flip();
+
+        long pos = 0;
+        while (header.hasRemaining()) {
+            pos += channel.write(header, pos);
+        }
+    }
+}
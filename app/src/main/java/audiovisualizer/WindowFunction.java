@@ -0,0 +1,39 @@
+package audiovisualizer;
+
+// Analysis windows for short-time transforms. Coefficients use the periodic
+// form, which is what overlapping STFT frames want.
+public enum WindowFunction {
+    HANN("Hann"),
+    HAMMING("Hamming"),
+    BLACKMAN("Blackman");
+
+    private final String label;
+
+    WindowFunction(String label) {
+        this.label = label;
+    }
+
+    public double[] coefficients(int size) {
+        double[] w = new double[size];
+        for (int i = 0; i < size; i++) {
+            double x = 2 * Math.PI * i / size;
+            switch (this) {
+                case HANN:
+                    w[i] = 0.5 - 0.5 * Math.cos(x);
+                    break;
+                case HAMMING:
+                    w[i] = 0.54 - 0.46 * Math.cos(x);
+                    break;
+                default:
+                    w[i] = 0.42 - 0.5 * Math.cos(x) + 0.08 * Math.cos(2 * x);
+                    break;
+            }
+        }
+        return w;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
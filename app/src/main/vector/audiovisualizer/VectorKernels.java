@@ -0,0 +1,115 @@
+package audiovisualizer;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Vector API versions of the Kernels loops at the CPU's preferred width (4
+// doubles with AVX2, 8 with AVX-512). Every lane does the same operations in
+// the same order as the scalar loop, so results match exactly; the tails
+// shorter than one vector go through the scalar code.
+final class VectorKernels extends Kernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final float SHORT_SCALE = 1f / 32768;
+    // Gather index maps for strided decoding, by stride; wider strides use the scalar loop
+    private static final int MAX_STRIDE = 8;
+    private static final int[][] STRIDE_MAPS = strideMaps();
+
+    private static int[][] strideMaps() {
+        int[][] maps = new int[MAX_STRIDE + 1][];
+        for (int stride = 2; stride <= MAX_STRIDE; stride++) {
+            maps[stride] = new int[SHORTS.length()];
+            for (int i = 0; i < maps[stride].length; i++) maps[stride][i] = i * stride;
+        }
+        return maps;
+    }
+
+    @Override
+    public String name() {
+        return "vector (" + DOUBLES.length() + " x double)";
+    }
+
+    @Override
+    public int lanes() {
+        return DOUBLES.length();
+    }
+
+    @Override
+    public void butterflies(double[] real, double[] imag, int a, int b, double[] wr, double[] wi, int t, int count) {
+        int step = DOUBLES.length();
+        int j = 0;
+        for (int end = DOUBLES.loopBound(count); j < end; j += step) {
+            DoubleVector re = DoubleVector.fromArray(DOUBLES, wr, t + j);
+            DoubleVector im = DoubleVector.fromArray(DOUBLES, wi, t + j);
+            DoubleVector br = DoubleVector.fromArray(DOUBLES, real, b + j);
+            DoubleVector bi = DoubleVector.fromArray(DOUBLES, imag, b + j);
+            DoubleVector ar = DoubleVector.fromArray(DOUBLES, real, a + j);
+            DoubleVector ai = DoubleVector.fromArray(DOUBLES, imag, a + j);
+            DoubleVector tre = re.mul(br).sub(im.mul(bi));
+            DoubleVector tim = re.mul(bi).add(im.mul(br));
+
+            ar.sub(tre).intoArray(real, b + j);
+            ai.sub(tim).intoArray(imag, b + j);
+            ar.add(tre).intoArray(real, a + j);
+            ai.add(tim).intoArray(imag, a + j);
+        }
+        if (j < count) super.butterflies(real, imag, a + j, b + j, wr, wi, t + j, count - j);
+    }
+
+    @Override
+    public void magnitudes(double[] real, double[] imag, double[] dst, int count) {
+        int step = DOUBLES.length();
+        int i = 0;
+        for (int end = DOUBLES.loopBound(count); i < end; i += step) {
+            DoubleVector re = DoubleVector.fromArray(DOUBLES, real, i);
+            DoubleVector im = DoubleVector.fromArray(DOUBLES, imag, i);
+            re.mul(re).add(im.mul(im)).lanewise(VectorOperators.SQRT).intoArray(dst, i);
+        }
+        for (; i < count; i++) {
+            dst[i] = Math.sqrt(real[i] * real[i] + imag[i] * imag[i]);
+        }
+    }
+
+    @Override
+    public void shortsToFloats(short[] src, int srcOffset, float[] dst, int dstOffset, int count) {
+        // Each short vector widens into parts float vectors
+        int parts = SHORTS.length() / FLOATS.length();
+        int step = SHORTS.length();
+        int i = 0;
+        for (int end = SHORTS.loopBound(count); i < end; i += step) {
+            ShortVector s = ShortVector.fromArray(SHORTS, src, srcOffset + i);
+            for (int part = 0; part < parts; part++) {
+                ((FloatVector) s.convertShape(VectorOperators.S2F, FLOATS, part))
+                        .mul(SHORT_SCALE)
+                        .intoArray(dst, dstOffset + i + part * FLOATS.length());
+            }
+        }
+        if (i < count) super.shortsToFloats(src, srcOffset + i, dst, dstOffset + i, count - i);
+    }
+
+    @Override
+    public void shortsToFloats(short[] src, int srcOffset, int stride, float[] dst, int dstOffset, int count) {
+        if (stride == 1 || stride > MAX_STRIDE) {
+            super.shortsToFloats(src, srcOffset, stride, dst, dstOffset, count);
+            return;
+        }
+        // One gather picks a vector of the channel's samples, then it widens as above
+        int[] map = STRIDE_MAPS[stride];
+        int parts = SHORTS.length() / FLOATS.length();
+        int step = SHORTS.length();
+        int i = 0;
+        for (int end = SHORTS.loopBound(count); i < end; i += step) {
+            ShortVector s = ShortVector.fromArray(SHORTS, src, srcOffset + i * stride, map, 0);
+            for (int part = 0; part < parts; part++) {
+                ((FloatVector) s.convertShape(VectorOperators.S2F, FLOATS, part))
+                        .mul(SHORT_SCALE)
+                        .intoArray(dst, dstOffset + i + part * FLOATS.length());
+            }
+        }
+        if (i < count) super.shortsToFloats(src, srcOffset + i * stride, stride, dst, dstOffset + i, count - i);
+    }
+}
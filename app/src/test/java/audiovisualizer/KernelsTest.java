@@ -0,0 +1,236 @@
+package audiovisualizer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// The vector kernels must give bit-for-bit the same results as the scalar ones
+// (see Kernels). The comparisons are skipped when the JVM cannot load them;
+// the PcmView checks against sample() run either way.
+class KernelsTest {
+    private static final AudioFormat.Encoding SIGNED = AudioFormat.Encoding.PCM_SIGNED;
+    private static final AudioFormat.Encoding UNSIGNED = AudioFormat.Encoding.PCM_UNSIGNED;
+    private static final AudioFormat.Encoding FLOAT = AudioFormat.Encoding.PCM_FLOAT;
+
+    private static final AudioFormat[] FORMATS = {
+            format(UNSIGNED, 8, 1, false),
+            format(SIGNED, 8, 2, false),
+            format(SIGNED, 16, 1, false),
+            format(SIGNED, 16, 1, true),
+            format(SIGNED, 16, 2, false),
+            format(SIGNED, 16, 6, true),
+            format(SIGNED, 16, 10, false),
+            format(SIGNED, 24, 2, false),
+            format(SIGNED, 32, 1, true),
+            format(FLOAT, 32, 2, false),
+    };
+
+    private final Random random = new Random(42);
+
+    @AfterEach
+    void restoreVector() {
+        Kernels.setVectorEnabled(true);
+    }
+
+    @Test
+    void transformMatchesScalar() {
+        assumeVector();
+        for (int n = 2; n <= 1 << 20; n *= 2) {
+            double[] re = randomDoubles(n);
+            double[] im = randomDoubles(n);
+            FftPlan plan = FftPlan.forSize(n);
+            double[][] expected = scalar(() -> transform(plan, re, im));
+            double[][] actual = transform(plan, re, im);
+            assertArrayEquals(expected[0], actual[0], "real, n = " + n);
+            assertArrayEquals(expected[1], actual[1], "imag, n = " + n);
+        }
+    }
+
+    @Test
+    void realForwardPackedMatchesScalar() {
+        assumeVector();
+        for (int n = 2; n <= 1 << 16; n *= 2) {
+            double[] re = randomDoubles(n / 2 + 1);
+            double[] im = randomDoubles(n / 2 + 1);
+            FftPlan plan = FftPlan.forSize(n);
+            double[][] expected = scalar(() -> realForwardPacked(plan, re, im));
+            double[][] actual = realForwardPacked(plan, re, im);
+            assertArrayEquals(expected[0], actual[0], "real, n = " + n);
+            assertArrayEquals(expected[1], actual[1], "imag, n = " + n);
+        }
+    }
+
+    @Test
+    void magnitudesMatchScalar() {
+        assumeVector();
+        // Counts that are and are not multiples of the vector width
+        for (int count : new int[] { 0, 1, 3, 4, 7, 8, 17, 64, 1001 }) {
+            double[] re = randomDoubles(count);
+            double[] im = randomDoubles(count);
+            double[] expected = scalar(() -> magnitudes(re, im));
+            assertArrayEquals(expected, magnitudes(re, im), "count = " + count);
+        }
+    }
+
+    @Test
+    void stridedShortsMatchScalar() {
+        assumeVector();
+        short[] src = new short[40000];
+        for (int i = 0; i < src.length; i++) src[i] = (short) random.nextInt();
+        for (int stride = 1; stride <= 10; stride++) {
+            for (int count : new int[] { 0, 1, 15, 16, 33, 1001 }) {
+                int s = stride, c = count;
+                float[] expected = scalar(() -> stridedShorts(src, s, c));
+                assertArrayEquals(expected, stridedShorts(src, s, c), "stride " + s + ", count " + c);
+            }
+        }
+    }
+
+    @Test
+    void stftFramesMatchScalar() {
+        assumeVector();
+        float[] signal = new float[20000];
+        for (int i = 0; i < signal.length; i++) signal[i] = random.nextFloat() * 2 - 1;
+        float[] expected = scalar(() -> stftFrames(signal));
+        assertArrayEquals(expected, stftFrames(signal));
+    }
+
+    @Test
+    void pcmReadMatchesScalar() {
+        assumeVector();
+        for (AudioFormat format : FORMATS) {
+            PcmView audio = segmented(randomPcm(format, 5000), format, 1237);
+            for (int channel = 0; channel < format.getChannels(); channel++) {
+                int c = channel;
+                float[] expected = scalar(() -> read(audio, 3, c, 4990));
+                assertArrayEquals(expected, read(audio, 3, c, 4990), format + ", channel " + c);
+            }
+        }
+    }
+
+    @Test
+    void pcmReadMatchesSample() {
+        for (AudioFormat format : FORMATS) {
+            PcmView audio = segmented(randomPcm(format, 5000), format, 1237);
+            assertEquals(5000, audio.frames(), format.toString());
+            for (int channel = 0; channel < format.getChannels(); channel++) {
+                float[] samples = read(audio, 3, channel, 4990);
+                for (int i = 0; i < samples.length; i++) {
+                    assertEquals(audio.sample(3 + i, channel), samples[i], format + ", channel " + channel + ", frame " + (3 + i));
+                }
+            }
+        }
+    }
+
+    // 8-bit stereo has the same frame size as 16-bit mono but must not take its path
+    @Test
+    void signedEightBitStereo() {
+        AudioFormat format = format(SIGNED, 8, 2, false);
+        byte[] data = { 0, -128, 64, 127, -1, 1 };
+        PcmView audio = PcmView.wrap(data, format);
+        assertArrayEquals(new float[] { 0, 0.5f, -1f / 128 }, read(audio, 0, 0, 3));
+        assertArrayEquals(new float[] { -1, 127f / 128, 1f / 128 }, read(audio, 0, 1, 3));
+    }
+
+    private static void assumeVector() {
+        assumeTrue(Kernels.vectorAvailable(), "vector kernels not available on this JVM");
+    }
+
+    private static <T> T scalar(Supplier<T> task) {
+        Kernels.setVectorEnabled(false);
+        try {
+            return task.get();
+        } finally {
+            Kernels.setVectorEnabled(true);
+        }
+    }
+
+    private static double[][] transform(FftPlan plan, double[] re, double[] im) {
+        double[] real = re.clone();
+        double[] imag = im.clone();
+        plan.transform(real, imag);
+        return new double[][] { real, imag };
+    }
+
+    private static double[][] realForwardPacked(FftPlan plan, double[] re, double[] im) {
+        double[] real = re.clone();
+        double[] imag = im.clone();
+        plan.realForwardPacked(real, imag);
+        return new double[][] { real, imag };
+    }
+
+    private static double[] magnitudes(double[] re, double[] im) {
+        double[] dst = new double[re.length];
+        Kernels.active().magnitudes(re, im, dst, re.length);
+        return dst;
+    }
+
+    private static float[] stridedShorts(short[] src, int stride, int count) {
+        float[] dst = new float[count + 2];
+        Kernels.active().shortsToFloats(src, 3, stride, dst, 2, count);
+        return dst;
+    }
+
+    // Every frame's magnitudes, one after another
+    private static float[] stftFrames(float[] signal) {
+        int bins = 1024 / 2 + 1;
+        int frames = (signal.length - 1024) / 512 + 1;
+        float[] all = new float[frames * bins];
+        int[] frame = new int[1];
+        StftProcessor stft = new StftProcessor(1024, 512, WindowFunction.HANN,
+                magnitudes -> System.arraycopy(magnitudes, 0, all, bins * frame[0]++, bins));
+        stft.feed(signal, 0, signal.length);
+        assertEquals(frames, frame[0]);
+        return all;
+    }
+
+    private static float[] read(PcmView audio, long frame, int channel, int length) {
+        float[] dst = new float[length];
+        audio.read(frame, channel, dst, 0, length);
+        return dst;
+    }
+
+    private static AudioFormat format(AudioFormat.Encoding encoding, int bits, int channels, boolean bigEndian) {
+        return new AudioFormat(encoding, 44100, bits, channels, channels * bits / 8, 44100, bigEndian);
+    }
+
+    private double[] randomDoubles(int n) {
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) values[i] = random.nextDouble() * 2 - 1;
+        return values;
+    }
+
+    // Random integer samples, or floats in [-1, 1) so there are no NaNs
+    private byte[] randomPcm(AudioFormat format, int frames) {
+        byte[] data = new byte[frames * format.getFrameSize()];
+        if (!FLOAT.equals(format.getEncoding())) {
+            random.nextBytes(data);
+            return data;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data)
+                .order(format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) buffer.putFloat(random.nextFloat() * 2 - 1);
+        return data;
+    }
+
+    // Splits the data into segments of segmentFrames frames, so reads cross segment boundaries
+    private static PcmView segmented(byte[] data, AudioFormat format, int segmentFrames) {
+        int segmentBytes = segmentFrames * format.getFrameSize();
+        int count = (data.length + segmentBytes - 1) / segmentBytes;
+        ByteBuffer[] segments = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            int from = i * segmentBytes;
+            segments[i] = ByteBuffer.wrap(data, from, Math.min(segmentBytes, data.length - from));
+        }
+        return PcmView.of(segments, segmentBytes, format);
+    }
+}
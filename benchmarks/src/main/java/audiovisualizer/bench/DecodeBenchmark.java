@@ -0,0 +1,107 @@
+package audiovisualizer.bench;
+
+import audiovisualizer.PcmView;
+import audiovisualizer.SampleBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sound.sampled.AudioFormat;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+// Byte-to-sample decode for the formats WavFile accepts, on a 2^20-frame stereo
+// clip: one channel read in blocks through PcmView (decoding on access) and
+// through a SampleBuffer (decoded once), and the one-time decode itself.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+    private static final int FRAMES = 1 << 20;
+    private static final int CHANNELS = 2;
+    private static final int BLOCK = 8192;
+
+    @Param({ "PCM_U8", "PCM_S16_LE", "PCM_S16_BE", "PCM_S24_LE", "PCM_F32_LE" })
+    public String encoding;
+
+    private PcmView audio;
+    private SampleBuffer decoded;
+    private float[] block;
+
+    @Setup
+    public void setup() {
+        AudioFormat format;
+        switch (encoding) {
+            case "PCM_U8": format = new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, 44100, 8, CHANNELS, CHANNELS, 44100, false); break;
+            case "PCM_S16_LE": format = new AudioFormat(44100, 16, CHANNELS, true, false); break;
+            case "PCM_S16_BE": format = new AudioFormat(44100, 16, CHANNELS, true, true); break;
+            case "PCM_S24_LE": format = new AudioFormat(44100, 24, CHANNELS, true, false); break;
+            case "PCM_F32_LE": format = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 44100, 32, CHANNELS, CHANNELS * 4, 44100, false); break;
+            default: throw new IllegalArgumentException("Unknown encoding: " + encoding);
+        }
+        audio = PcmView.wrap(encode(Signals.tones(FRAMES * CHANNELS, 44100), format), format);
+        decoded = SampleBuffer.decode(audio);
+        block = new float[BLOCK];
+    }
+
+    private static byte[] encode(double[] samples, AudioFormat format) {
+        int bytes = format.getSampleSizeInBits() / 8;
+        ByteBuffer out = ByteBuffer.allocate(samples.length * bytes)
+                .order(format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        for (double s : samples) {
+            if (AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding())) {
+                out.putFloat((float) s);
+            } else if (bytes == 1) {
+                out.put((byte) (s * 127 + 128));
+            } else if (bytes == 2) {
+                out.putShort((short) (s * 32767));
+            } else {
+                int v = (int) (s * 8388607);
+                if (format.isBigEndian()) {
+                    out.put((byte) (v >> 16)).put((byte) (v >> 8)).put((byte) v);
+                } else {
+                    out.put((byte) v).put((byte) (v >> 8)).put((byte) (v >> 16));
+                }
+            }
+        }
+        return out.array();
+    }
+
+    @Benchmark
+    public float readBlocks() {
+        float sum = 0;
+        for (long pos = 0; pos < FRAMES; pos += BLOCK) {
+            audio.read(pos, 0, block, 0, BLOCK);
+            sum += block[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public float readDecodedBlocks() {
+        float sum = 0;
+        for (long pos = 0; pos < FRAMES; pos += BLOCK) {
+            decoded.read(pos, 0, block, 0, BLOCK);
+            sum += block[0];
+        }
+        return sum;
+    }
+
+    // Both channels
+    @Benchmark
+    public SampleBuffer decodeOnce() {
+        return SampleBuffer.decode(audio);
+    }
+}
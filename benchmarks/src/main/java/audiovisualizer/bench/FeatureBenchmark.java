@@ -0,0 +1,53 @@
+package audiovisualizer.bench;
+
+import audiovisualizer.FeatureExtractor;
+import audiovisualizer.FeatureSeries;
+import audiovisualizer.WindowFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Feature extraction over one minute of 44.1 kHz audio fed in capture-sized
+// blocks; anything under 60 s per op is faster than real time.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FeatureBenchmark {
+    private static final int SAMPLES = 44100 * 60;
+    private static final int BLOCK = 2048;
+
+    @Param({ "256", "512" })
+    public int hop;
+
+    private float[] samples;
+
+    @Setup
+    public void setup() {
+        double[] tones = Signals.tones(SAMPLES, 44100);
+        samples = new float[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) samples[i] = (float) tones[i];
+    }
+
+    @Benchmark
+    public FeatureSeries extract() {
+        FeatureExtractor extractor = new FeatureExtractor(44100, FeatureExtractor.DEFAULT_FRAME_SIZE, hop,
+                WindowFunction.HANN);
+        for (int pos = 0; pos < SAMPLES; pos += BLOCK) {
+            extractor.feed(samples, pos, Math.min(BLOCK, SAMPLES - pos));
+        }
+        return extractor.series();
+    }
+}
@@ -0,0 +1,69 @@
+package audiovisualizer.bench;
+
+import audiovisualizer.Audio_Visualizer;
+import audiovisualizer.FftPlan;
+import audiovisualizer.PcmView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// FFT throughput from 2^10 to 2^22 points: the cached complex plan, the
+// real-input path, and computeFFT end to end (decode + pack + transform +
+// magnitudes) as used by Visualize and batch mode.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class FftBenchmark {
+    @Param({ "1024", "4096", "16384", "65536", "262144", "1048576", "4194304" })
+    public int size;
+
+    private FftPlan plan;
+    private double[] signal;
+    private double[] real;
+    private double[] imag;
+    private PcmView audio;
+
+    @Setup
+    public void setup() {
+        plan = FftPlan.forSize(size);
+        signal = Signals.tones(size, 44100);
+        real = new double[size];
+        imag = new double[size];
+        audio = Signals.pcm16(signal, 44100);
+    }
+
+    // The transform is in place, so the input is restored first; the copy is
+    // O(n) next to the O(n log n) transform
+    @Benchmark
+    public double[] complexTransform() {
+        System.arraycopy(signal, 0, real, 0, size);
+        Arrays.fill(imag, 0);
+        plan.transform(real, imag);
+        return real;
+    }
+
+    @Benchmark
+    public double[] realTransform() {
+        plan.realForward(signal, real, imag);
+        return real;
+    }
+
+    @Benchmark
+    public double[] computeFft() {
+        return Audio_Visualizer.computeFFT(audio);
+    }
+}
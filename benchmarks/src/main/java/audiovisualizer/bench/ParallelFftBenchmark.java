@@ -0,0 +1,74 @@
+package audiovisualizer.bench;
+
+import audiovisualizer.FftParallelism;
+import audiovisualizer.FftPlanner;
+import audiovisualizer.RealFft;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Sequential vs fork/join transforms above FftParallelism.THRESHOLD. Run with
+// -p parallel=false,true and compare; the common pool uses all cores but one,
+// plus the calling thread.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class ParallelFftBenchmark {
+    // 2^16 .. 2^22, plus a 5-smooth size that goes through the mixed-radix path
+    @Param({ "65536", "262144", "1048576", "4194304", "3840000" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    private double[] signal;
+    private double[] real;
+    private double[] imag;
+
+    @Setup
+    public void setup() {
+        FftParallelism.setEnabled(parallel);
+        signal = Signals.tones(size, 44100);
+        real = new double[size];
+        imag = new double[size];
+    }
+
+    @TearDown
+    public void tearDown() {
+        FftParallelism.setEnabled(true);
+    }
+
+    @Benchmark
+    public double[] complexTransform() {
+        System.arraycopy(signal, 0, real, 0, size);
+        Arrays.fill(imag, 0);
+        FftPlanner.plan(size).transform(real, imag);
+        return real;
+    }
+
+    @Benchmark
+    public double[] realTransform() {
+        RealFft plan = FftPlanner.realPlan(size);
+        for (int k = 0; k < size / 2; k++) {
+            real[k] = signal[2 * k];
+            imag[k] = signal[2 * k + 1];
+        }
+        plan.realForwardPacked(real, imag);
+        return real;
+    }
+}
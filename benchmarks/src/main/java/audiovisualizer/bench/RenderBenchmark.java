@@ -0,0 +1,131 @@
+package audiovisualizer.bench;
+
+import audiovisualizer.Audio_Visualizer;
+import audiovisualizer.SampleBuffer;
+import audiovisualizer.ScopeBuffer;
+import audiovisualizer.SpectrogramBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// Offscreen rendering of each visualization panel into a BufferedImage, as
+// Save Graph and batch mode do. The waveform panels show a ten minute clip,
+// the spectrum panel its full-length FFT.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx2g" })
+@State(Scope.Thread)
+public class RenderBenchmark {
+    private static final float SAMPLE_RATE = 44100;
+    private static final int CLIP_SECONDS = 600;
+    private static final int LIVE_SAMPLES = 2048;
+    private static final int SPECTROGRAM_FRAMES = 400;
+    private static final int SPECTROGRAM_BINS = 513;
+
+    // Panel size in pixels, width x height
+    @Param({ "800x150", "1920x400" })
+    public String size;
+
+    private BufferedImage image;
+    private Graphics2D g2;
+    private float[] live;
+    private ScopeBuffer scope;
+    private Audio_Visualizer.LiveWaveformPanel livePanel;
+    private Audio_Visualizer.FinalWaveformPanel finalPanel;
+    private Audio_Visualizer.FrequencyPanel frequencyPanel;
+    private Audio_Visualizer.SpectrogramPanel spectrogramPanel;
+
+    @Setup
+    public void setup() {
+        int x = size.indexOf('x');
+        int width = Integer.parseInt(size.substring(0, x));
+        int height = Integer.parseInt(size.substring(x + 1));
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        g2 = image.createGraphics();
+
+        // Decoded once, as the UI does after recording or loading
+        SampleBuffer clip = SampleBuffer.decode(
+                Signals.pcm16(Signals.tones((int) (SAMPLE_RATE * CLIP_SECONDS), SAMPLE_RATE), SAMPLE_RATE));
+
+        // One capture block per call, after the history has filled once
+        live = new float[LIVE_SAMPLES];
+        clip.read(0, 0, live, 0, live.length);
+        scope = new ScopeBuffer(4096, 64, 1024);
+        for (int i = 0; i < 4096 * 64 / LIVE_SAMPLES; i++) scope.append(live, 0, live.length);
+        livePanel = new Audio_Visualizer.LiveWaveformPanel();
+        livePanel.setBackground(Color.LIGHT_GRAY);
+        livePanel.setSize(width, height);
+        livePanel.setSource(scope);
+        livePanel.paint(g2);
+
+        finalPanel = new Audio_Visualizer.FinalWaveformPanel();
+        finalPanel.setBackground(Color.WHITE);
+        finalPanel.setSize(width, height);
+        finalPanel.setAudio(clip);
+
+        frequencyPanel = new Audio_Visualizer.FrequencyPanel();
+        frequencyPanel.setBackground(new Color(240, 240, 255));
+        frequencyPanel.setSize(width, height);
+        frequencyPanel.setFrequencies(Audio_Visualizer.computeFFT(clip), SAMPLE_RATE);
+
+        SpectrogramBuffer frames = new SpectrogramBuffer(SPECTROGRAM_FRAMES, SPECTROGRAM_BINS);
+        float[] frame = new float[SPECTROGRAM_BINS];
+        for (int f = 0; f < SPECTROGRAM_FRAMES; f++) {
+            for (int b = 0; b < frame.length; b++) frame[b] = (float) Math.abs(Math.sin(0.01 * f * b));
+            frames.onFrame(frame);
+        }
+        spectrogramPanel = new Audio_Visualizer.SpectrogramPanel();
+        spectrogramPanel.setSize(width, height);
+        spectrogramPanel.setSource(frames);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2.dispose();
+    }
+
+    // Steady state while recording: a new block arrives, only its columns are
+    // drawn into the scope image and the image is blitted
+    @Benchmark
+    public BufferedImage liveWaveform() {
+        scope.append(live, 0, live.length);
+        livePanel.paint(g2);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage finalWaveform() {
+        finalPanel.paint(g2);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage frequencySpectrum() {
+        frequencyPanel.paint(g2);
+        return image;
+    }
+
+    // Every frame is already rendered into the panel's column image after the
+    // first call, so this measures scaling the history onto the panel
+    @Benchmark
+    public BufferedImage spectrogram() {
+        spectrogramPanel.paint(g2);
+        return image;
+    }
+}
@@ -0,0 +1,52 @@
+package audiovisualizer.bench;
+
+import audiovisualizer.PcmView;
+
+import javax.sound.sampled.AudioFormat;
+import java.util.Random;
+
+// Deterministic test signals shared by the benchmarks
+final class Signals {
+    private Signals() {
+    }
+
+    // A few tones plus a little noise, peak below 1
+    static double[] tones(int length, float sampleRate) {
+        Random random = new Random(42);
+        double[] out = new double[length];
+        for (int i = 0; i < length; i++) {
+            double t = i / (double) sampleRate;
+            out[i] = 0.4 * Math.sin(2 * Math.PI * 440 * t)
+                    + 0.2 * Math.sin(2 * Math.PI * 1250 * t)
+                    + 0.1 * Math.sin(2 * Math.PI * 7000 * t)
+                    + 0.05 * random.nextGaussian();
+        }
+        return out;
+    }
+
+    // Mono 16-bit big-endian PCM, the format the recorder captures
+    static PcmView pcm16(double[] samples, float sampleRate) {
+        byte[] data = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            short s = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, samples[i] * 32767));
+            data[2 * i] = (byte) (s >> 8);
+            data[2 * i + 1] = (byte) s;
+        }
+        return PcmView.wrap(data, new AudioFormat(sampleRate, 16, 1, true, true));
+    }
+
+    // Stereo 16-bit little-endian PCM as in a WAV file: the samples on the left,
+    // inverted on the right
+    static PcmView stereo16(double[] samples, float sampleRate) {
+        byte[] data = new byte[samples.length * 4];
+        for (int i = 0; i < samples.length; i++) {
+            short s = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, samples[i] * 32767));
+            short r = (short) -s;
+            data[4 * i] = (byte) s;
+            data[4 * i + 1] = (byte) (s >> 8);
+            data[4 * i + 2] = (byte) r;
+            data[4 * i + 3] = (byte) (r >> 8);
+        }
+        return PcmView.wrap(data, new AudioFormat(sampleRate, 16, 2, true, false));
+    }
+}
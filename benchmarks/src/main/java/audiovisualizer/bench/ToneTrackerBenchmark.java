@@ -0,0 +1,54 @@
+package audiovisualizer.bench;
+
+import audiovisualizer.ToneTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Sliding-DFT tone tracking over one capture block; the cost per block should
+// grow linearly with the number of tones and not depend on the window length.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ToneTrackerBenchmark {
+    private static final int BLOCK = 2048;
+
+    @Param({ "1", "4", "16" })
+    public int tones;
+
+    @Param({ "4410", "44100" })
+    public int window;
+
+    private ToneTracker tracker;
+    private float[] block;
+
+    @Setup
+    public void setup() {
+        double[] frequencies = new double[tones];
+        for (int t = 0; t < tones; t++) frequencies[t] = 50 + 97.5 * t;
+        tracker = new ToneTracker(44100, frequencies, window, -30, 3, null);
+
+        double[] samples = Signals.tones(BLOCK, 44100);
+        block = new float[BLOCK];
+        for (int i = 0; i < BLOCK; i++) block[i] = (float) samples[i];
+    }
+
+    @Benchmark
+    public ToneTracker feedBlock() {
+        tracker.feed(block, 0, BLOCK);
+        return tracker;
+    }
+}
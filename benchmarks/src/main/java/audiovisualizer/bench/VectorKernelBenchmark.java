@@ -0,0 +1,109 @@
+package audiovisualizer.bench;
+
+import audiovisualizer.Audio_Visualizer;
+import audiovisualizer.FftParallelism;
+import audiovisualizer.FftPlan;
+import audiovisualizer.Kernels;
+import audiovisualizer.PcmView;
+import audiovisualizer.StftProcessor;
+import audiovisualizer.WindowFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Scalar vs Vector API kernels, single-threaded: the radix-2 transform, mono
+// and stereo 16-bit decode, computeFFT end to end and the STFT frames behind the live
+// spectrum and spectrogram (1024-point frames, 512 hop, as in the UI). The fork adds the incubator module;
+// with -p vector=true on a JVM without it the setup fails instead of quietly
+// measuring the scalar path twice.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g", "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Thread)
+public class VectorKernelBenchmark {
+    @Param({ "1024", "16384", "262144", "4194304" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean vector;
+
+    private FftPlan plan;
+    private double[] signal;
+    private double[] real;
+    private double[] imag;
+    private PcmView audio;
+    private PcmView stereo;
+    private float[] samples;
+    private StftProcessor stft;
+    private float peak;
+
+    @Setup
+    public void setup() {
+        if (vector && !Kernels.vectorAvailable())
+            throw new IllegalStateException("Vector kernels are not available on this JVM");
+        Kernels.setVectorEnabled(vector);
+        FftParallelism.setEnabled(false);
+        plan = FftPlan.forSize(size);
+        signal = Signals.tones(size, 44100);
+        real = new double[size];
+        imag = new double[size];
+        audio = Signals.pcm16(signal, 44100);
+        stereo = Signals.stereo16(signal, 44100);
+        samples = new float[size];
+        audio.read(0, 0, samples, 0, size);
+        stft = new StftProcessor(1024, 512, WindowFunction.HANN, magnitudes -> peak += magnitudes[1]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Kernels.setVectorEnabled(true);
+        FftParallelism.setEnabled(true);
+    }
+
+    @Benchmark
+    public double[] complexTransform() {
+        System.arraycopy(signal, 0, real, 0, size);
+        Arrays.fill(imag, 0);
+        plan.transform(real, imag);
+        return real;
+    }
+
+    @Benchmark
+    public float[] decode16() {
+        audio.read(0, 0, samples, 0, size);
+        return samples;
+    }
+
+    // One channel of interleaved stereo, as read from a WAV file
+    @Benchmark
+    public float[] decode16Stereo() {
+        stereo.read(0, 1, samples, 0, size);
+        return samples;
+    }
+
+    @Benchmark
+    public double[] computeFft() {
+        return Audio_Visualizer.computeFFT(audio);
+    }
+
+    @Benchmark
+    public float stftFrames() {
+        stft.reset();
+        stft.feed(samples, 0, size);
+        return peak;
+    }
+}